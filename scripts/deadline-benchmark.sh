@@ -0,0 +1,10 @@
+#!/usr/bin/env bash
+# Compares deadline hit rates of concurrent searches on a shared DeadlineScheduler and on a thread pool for each search.
+# The benchmark is compiled with the tests, it isn't part of the jar.
+# Usage: scripts/deadline-benchmark.sh [benchmark options...]
+#   e.g. scripts/deadline-benchmark.sh --jobs 40 --interval 50 -w 2
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+mvn -q -Pjava test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt -Dmdep.includeScope=test
+java -cp "target/test-classes:target/classes:$(cat target/test-classpath.txt)" net.landj.tableplannerj.DeadlineBenchmark "$@"
@@ -0,0 +1,48 @@
+#!/usr/bin/env bash
+# Compares wall-clock time of small plans run by the assembly jar and by the native executable.
+# Build both first:
+#   mvn -Pjava package     -> target/tableplan-1.0-SNAPSHOT-jar-with-dependencies.jar
+#   mvn -Pnative package   -> target/tableplan
+# Usage: scripts/startup-benchmark.sh [runs] [planner options...]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${1:-20}
+shift || true
+OPTIONS=("$@")
+if [ ${#OPTIONS[@]} -eq 0 ]; then
+  OPTIONS=(-g 16 -t 4 -s 4 -it 100 --seed 1)
+fi
+
+JAR=target/tableplan-1.0-SNAPSHOT-jar-with-dependencies.jar
+NATIVE=target/tableplan
+
+measure() {
+  local name=$1
+  shift
+  local total=0 min=0 max=0
+  "$@" "${OPTIONS[@]}" > /dev/null # warm up file system cache
+  for ((i = 0; i < RUNS; i++)); do
+    local start end elapsed
+    start=$(date +%s%N)
+    "$@" "${OPTIONS[@]}" > /dev/null
+    end=$(date +%s%N)
+    elapsed=$(((end - start) / 1000000))
+    total=$((total + elapsed))
+    if [ $i -eq 0 ] || [ $elapsed -lt $min ]; then min=$elapsed; fi
+    if [ $elapsed -gt $max ]; then max=$elapsed; fi
+  done
+  printf "%-8s runs=%d avg=%dms min=%dms max=%dms\n" "$name" "$RUNS" $((total / RUNS)) $min $max
+}
+
+if [ -f "$JAR" ]; then
+  measure jar java -jar "$JAR"
+  measure jar-c1 java -XX:TieredStopAtLevel=1 -jar "$JAR"
+else
+  echo "jar      not found ($JAR), build with: mvn -Pjava package"
+fi
+if [ -x "$NATIVE" ]; then
+  measure native "$NATIVE"
+else
+  echo "native   not found ($NATIVE), build with: mvn -Pnative package (GraalVM with native-image required)"
+fi
@@ -0,0 +1,28 @@
+#!/usr/bin/env bash
+# Reports plans generated per second by the random-restart engine at different thread counts.
+# Build the jar first:
+#   mvn -Pjava package     -> target/tableplan-1.0-SNAPSHOT-jar-with-dependencies.jar
+# Usage: scripts/throughput-benchmark.sh [thread counts] [planner options...]
+#   e.g. scripts/throughput-benchmark.sh "1 2 4 8" -g 16 -t 4 -s 4 -it 200000
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+THREADS=${1:-"1 2 4 8"}
+shift || true
+OPTIONS=("$@")
+if [ ${#OPTIONS[@]} -eq 0 ]; then
+  OPTIONS=(-g 16 -t 4 -s 4 -it 200000 --seed 1)
+fi
+
+JAR=target/tableplan-1.0-SNAPSHOT-jar-with-dependencies.jar
+if [ ! -f "$JAR" ]; then
+  echo "jar not found ($JAR), build with: mvn -Pjava package"
+  exit 1
+fi
+
+# every plan is scored (no duplicates skipped), so runs of all thread counts do the same work
+for threads in $THREADS; do
+  rate=$(java -jar "$JAR" "${OPTIONS[@]}" --seen-plans 0 --metrics -th "$threads" \
+    | sed -n 's/.*plans generated = [0-9]* (\([0-9]*\)\/s).*/\1/p')
+  printf "threads=%-3s plans/s=%s\n" "$threads" "$rate"
+done
@@ -0,0 +1,276 @@
+package net.landj.tableplannerj;
+
+import net.landj.tableplannerj.model.PlanFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * State of a search, so it can be resumed after the process was stopped.<p/>
+ * Plans are generated from random numbers derived from the seed and the iteration number, so the state is the seed,
+ * iterations already processed and the best plans found so far (best, fallback with broken constraints, top plans and Pareto front).
+ * Remaining iterations give the same plans as they would have without the stop.
+ * A checkpoint is only resumed with the same inputs (see {@link PlanFactory#getInputsHash()}) and engine settings,
+ * plans rated under different inputs are never mixed.<br/>
+ * Written to a temporary file which is then moved over the checkpoint file, so a checkpoint is never half written.
+ */
+public final class Checkpoint {
+    private static final int MAGIC = 0x5450434b; // TPCK
+    private static final int VERSION = 2;
+
+    private final long seed;
+    private final String engine;
+    private final long inputsHash;
+    private final int noOfIterations;
+    private final int noOfSessions;
+    private final List<String> tableNames;
+    private final List<String> guestNames;
+    private final BitSet completed;
+    private final int processedResults;
+    private final int skippedResults;
+    private final int[][] bestSeating;
+    private final int[][] fallbackSeating;
+    private final List<TopPlans.Entry> topPlans;
+    private final List<TopPlans.Entry> paretoFront;
+
+    @NotNull
+    public static Checkpoint read(@NotNull Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a checkpoint file: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Checkpoint " + file + " was written by another version (" + version + "), it can't be resumed");
+            }
+            long seed = in.readLong();
+            String engine = in.readUTF();
+            long inputsHash = in.readLong();
+            int noOfIterations = in.readInt();
+            int noOfSessions = in.readInt();
+            List<String> tableNames = readNames(in);
+            List<String> guestNames = readNames(in);
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            int processedResults = in.readInt();
+            int skippedResults = in.readInt();
+            int[][] bestSeating = readSeating(in);
+            int[][] fallbackSeating = readSeating(in);
+            List<TopPlans.Entry> topPlans = readEntries(in);
+            List<TopPlans.Entry> paretoFront = readEntries(in);
+            return new Checkpoint(seed, engine, inputsHash, noOfIterations, noOfSessions, tableNames, guestNames, BitSet.valueOf(words),
+                    processedResults, skippedResults, bestSeating, fallbackSeating, topPlans, paretoFront);
+        }
+    }
+
+    public final void write(@NotNull Path file) throws IOException {
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(seed);
+                out.writeUTF(engine);
+                out.writeLong(inputsHash);
+                out.writeInt(noOfIterations);
+                out.writeInt(noOfSessions);
+                writeNames(out, tableNames);
+                writeNames(out, guestNames);
+                long[] words = completed.toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+                out.writeInt(processedResults);
+                out.writeInt(skippedResults);
+                writeSeating(out, bestSeating);
+                writeSeating(out, fallbackSeating);
+                writeEntries(out, topPlans);
+                writeEntries(out, paretoFront);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // left behind only when writing failed
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Check the checkpoint belongs to the same search.
+     *
+     * @param inputsHash hash of the inputs of the plan factory and engine settings
+     */
+    public final void validate(@NotNull PlanFactory planFactory, @NotNull String engine, long inputsHash, int noOfIterations) {
+        if (!tableNames.equals(planFactory.getTableNames())
+                || !guestNames.equals(planFactory.getGuestNames())
+                || noOfSessions != planFactory.getNoOfSessions()) {
+            throw new IllegalArgumentException("Checkpoint is for different tables, guests or sessions");
+        }
+        if (!this.engine.equals(engine) || this.noOfIterations != noOfIterations) {
+            throw new IllegalArgumentException("Checkpoint is for engine " + this.engine + " and " + this.noOfIterations + " iterations");
+        }
+        if (this.inputsHash != inputsHash) {
+            throw new IllegalArgumentException("Checkpoint is for different history, constraints, capacities, attributes or engine settings");
+        }
+    }
+
+    public final long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * @return iterations already processed
+     */
+    @NotNull
+    public final BitSet getCompleted() {
+        return this.completed;
+    }
+
+    public final int getProcessedResults() {
+        return this.processedResults;
+    }
+
+    public final int getSkippedResults() {
+        return this.skippedResults;
+    }
+
+    /**
+     * @return seating of the best plan passing filters ({@code null} if none)
+     */
+    public final int[][] getBestSeating() {
+        return this.bestSeating;
+    }
+
+    /**
+     * @return seating of the best plan of all ({@code null} if none)
+     */
+    public final int[][] getFallbackSeating() {
+        return this.fallbackSeating;
+    }
+
+    @NotNull
+    public final List<TopPlans.Entry> getTopPlans() {
+        return this.topPlans;
+    }
+
+    @NotNull
+    public final List<TopPlans.Entry> getParetoFront() {
+        return this.paretoFront;
+    }
+
+    private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static List<String> readNames(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+
+    private static void writeSeating(DataOutputStream out, int[][] seating) throws IOException {
+        out.writeInt(seating == null ? -1 : seating.length);
+        if (seating != null) {
+            out.writeInt(seating.length > 0 ? seating[0].length : 0);
+            for (int[] guestSeating : seating) {
+                for (int table : guestSeating) {
+                    out.writeShort(table);
+                }
+            }
+        }
+    }
+
+    private static int[][] readSeating(DataInputStream in) throws IOException {
+        int noOfGuests = in.readInt();
+        if (noOfGuests < 0) {
+            return null;
+        }
+        int[][] seating = new int[noOfGuests][in.readInt()];
+        for (int[] guestSeating : seating) {
+            for (int round = 0; round < guestSeating.length; round++) {
+                guestSeating[round] = in.readUnsignedShort();
+            }
+        }
+        return seating;
+    }
+
+    private static void writeEntries(DataOutputStream out, List<TopPlans.Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (TopPlans.Entry entry : entries) {
+            out.writeDouble(entry.getRating());
+            out.writeLong(entry.getHash());
+            writeSeating(out, entry.getSeating());
+            out.writeInt(entry.getObjectives().length);
+            for (double objective : entry.getObjectives()) {
+                out.writeDouble(objective);
+            }
+        }
+    }
+
+    private static List<TopPlans.Entry> readEntries(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<TopPlans.Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            double rating = in.readDouble();
+            long hash = in.readLong();
+            int[][] seating = readSeating(in);
+            double[] objectives = new double[in.readInt()];
+            for (int j = 0; j < objectives.length; j++) {
+                objectives[j] = in.readDouble();
+            }
+            entries.add(new TopPlans.Entry(rating, hash, seating, objectives));
+        }
+        return entries;
+    }
+
+    /**
+     * @param inputsHash hash of the inputs of the plan factory and engine settings (see {@link PlanFactory#getInputsHash()})
+     */
+    public Checkpoint(long seed,
+                      @NotNull String engine,
+                      long inputsHash,
+                      int noOfIterations,
+                      int noOfSessions,
+                      @NotNull List<String> tableNames,
+                      @NotNull List<String> guestNames,
+                      @NotNull BitSet completed,
+                      int processedResults,
+                      int skippedResults,
+                      int[][] bestSeating,
+                      int[][] fallbackSeating,
+                      @NotNull List<TopPlans.Entry> topPlans,
+                      @NotNull List<TopPlans.Entry> paretoFront) {
+        this.seed = seed;
+        this.engine = engine;
+        this.inputsHash = inputsHash;
+        this.noOfIterations = noOfIterations;
+        this.noOfSessions = noOfSessions;
+        this.tableNames = tableNames;
+        this.guestNames = guestNames;
+        this.completed = completed;
+        this.processedResults = processedResults;
+        this.skippedResults = skippedResults;
+        this.bestSeating = bestSeating;
+        this.fallbackSeating = fallbackSeating;
+        this.topPlans = topPlans;
+        this.paretoFront = paretoFront;
+    }
+}
@@ -0,0 +1,111 @@
+package net.landj.tableplannerj;
+
+import net.landj.tableplannerj.model.PairingConstraints;
+import net.landj.tableplannerj.model.PlanFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Names file.<p/>
+ * One name per line, optionally followed by properties: {@code name | key=value, key=value}.<br/>
+ * Lines with {@link PairingConstraints} are collected separately. Empty lines are ignored.
+ */
+public final class InputFile {
+    public static final String PROPERTIES_SEPARATOR = "|";
+    public static final String CAPACITY = "capacity";
+
+    private final List<String> names;
+    private final List<Map<String, String>> properties;
+    private final List<String> constraintLines;
+
+    @NotNull
+    public static InputFile read(@NotNull Path file) throws IOException {
+        List<String> names = new ArrayList<>();
+        List<Map<String, String>> properties = new ArrayList<>();
+        List<String> constraintLines = new ArrayList<>();
+
+        for (String line : Files.readAllLines(file)) {
+            line = line.trim();
+            if (PairingConstraints.isConstraint(line)) {
+                constraintLines.add(line);
+            } else if (!line.isEmpty()) {
+                int separator = line.indexOf(PROPERTIES_SEPARATOR);
+                names.add(separator < 0 ? line : line.substring(0, separator).trim());
+                properties.add(separator < 0 ? Collections.emptyMap() : parseProperties(line.substring(separator + 1)));
+            }
+        }
+        return new InputFile(names, properties, constraintLines);
+    }
+
+    private static Map<String, String> parseProperties(String text) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (String property : text.split(",")) {
+            String[] keyValue = property.split("=", 2);
+            if (keyValue.length != 2 || keyValue[0].trim().isEmpty()) {
+                throw new IllegalArgumentException("Property must be in key=value format: " + property.trim());
+            }
+            properties.put(keyValue[0].trim(), keyValue[1].trim());
+        }
+        return properties;
+    }
+
+    @NotNull
+    public final List<String> getNames() {
+        return this.names;
+    }
+
+    /**
+     * @return properties of the name on given position
+     */
+    @NotNull
+    public final Map<String, String> getProperties(int index) {
+        return this.properties.get(index);
+    }
+
+    /**
+     * Table capacities (number of guests excluding the host) for the first names.
+     *
+     * @param noOfTables number of tables (first names are hosts)
+     * @return capacity for each table ({@link PlanFactory#UNSPECIFIED_CAPACITY} for tables without it), or {@code null} if none is specified
+     */
+    public final int[] getCapacities(int noOfTables) {
+        int[] capacities = new int[noOfTables];
+        boolean specified = false;
+        for (int i = 0; i < noOfTables; i++) {
+            String capacity = properties.get(i).get(CAPACITY);
+            if (capacity != null) {
+                try {
+                    capacities[i] = Integer.parseInt(capacity);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid capacity for " + names.get(i) + ": " + capacity);
+                }
+                if (capacities[i] <= 0) {
+                    throw new IllegalArgumentException("Capacity of " + names.get(i) + " must be positive: " + capacity);
+                }
+                specified = true;
+            } else {
+                capacities[i] = PlanFactory.UNSPECIFIED_CAPACITY;
+            }
+        }
+        return specified ? capacities : null;
+    }
+
+    @NotNull
+    public final List<String> getConstraintLines() {
+        return this.constraintLines;
+    }
+
+    private InputFile(List<String> names, List<Map<String, String>> properties, List<String> constraintLines) {
+        this.names = names;
+        this.properties = properties;
+        this.constraintLines = constraintLines;
+    }
+}
@@ -0,0 +1,337 @@
+package net.landj.tableplannerj;
+
+import net.landj.tableplannerj.model.PlanFactory;
+import net.landj.tableplannerj.model.PlanFilter;
+import net.landj.tableplannerj.model.TablePlan;
+import net.landj.tableplannerj.search.DecompositionSearch;
+import net.landj.tableplannerj.search.LargeNeighbourhoodSearch;
+import org.jetbrains.annotations.NotNull;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * How quickly each engine finds good plans, over a fixed corpus of event shapes (guests, tables, sessions).<p/>
+ * Every run plans one shape with one engine and seed for a fixed time budget, one plan after another on a single thread,
+ * the same way as the command line does (iteration random numbers, duplicates skipped, {@link PlanFilter} rules).
+ * It records the best rating over time (at a quarter, half and all of the budget), when (and after how many iterations)
+ * the best plan was found, when the perfect rating was reached and whether any plan passed the filters.<br/>
+ * Given seed gives the same plans, so each run is repeated with the same plans and the fastest time of each improvement is kept
+ * (best of the repeats), which leaves out most of the noise of the machine.<br/>
+ * Results are written as CSV, which can be kept as a baseline. Runs compared to a baseline fail (exit code 1)
+ * when plans passing the filters are found for fewer seeds, or when the ratings of the baseline take longer
+ * or need more iterations than the baseline plus the tolerance.
+ */
+@Command(name = "quality", description = "Quality-versus-time benchmark of engines over a corpus of event shapes")
+public final class QualityBenchmark implements Callable<Integer> {
+    private static final long MIN_TOLERANCE_MILLIS = 50; // below that, times are mostly timer and scheduling noise
+    private static final String HEADER = "guests,tables,sessions,engine,seed,iterations,accepted,perfect,msToPerfect,msToBest,iterationsToBest,bestRating,rating25,rating50,rating100";
+    private static final List<String> DEFAULT_SHAPES = Arrays.asList(
+            "8:3:2", "12:3:3", "16:4:4", "20:4:4", "24:5:4", "30:5:5", "40:5:5", "50:5:5", "100:10:5", "200:10:5");
+    @Option(names = {"--shape"}, paramLabel = "GUESTS:TABLES:SESSIONS", description = "Event shapes to plan (default ${DEFAULT-VALUE})")
+    private List<String> shapesOption = DEFAULT_SHAPES;
+
+    @Option(names = {"-e", "--engine"}, description = "Engines to compare: ${COMPLETION-CANDIDATES}", split = ",", defaultValue = "RANDOM,LNS")
+    private List<TablePlanner.Engine> enginesOption;
+
+    @Option(names = {"--seeds"}, description = "Runs of each shape and engine, with seeds 1, 2, ...", defaultValue = "3")
+    private int noOfSeedsOption;
+
+    @Option(names = {"--budget"}, description = "Milliseconds of each run", defaultValue = "1000")
+    private long budgetOption;
+
+    @Option(names = {"--repeats"}, description = "Repeats of each run with the same plans, the fastest time is used", defaultValue = "3")
+    private int noOfRepeatsOption;
+
+    @Option(names = {"--warmup"}, description = "Milliseconds of warm-up runs (not recorded) of each engine", defaultValue = "2000")
+    private long warmupOption;
+
+    @Option(names = {"-o", "--output"}, description = "Output file (CSV) to be used as a baseline")
+    private File outputFileOption;
+
+    @Option(names = {"-b", "--baseline"}, description = "Baseline file (CSV) to compare the runs with")
+    private File baselineFileOption;
+
+    @Option(names = {"--tolerance"}, description = "Allowed increase of time and iterations to the baseline rating (0.25 is 25%)", defaultValue = "0.25")
+    private double toleranceOption;
+
+    @Override
+    public Integer call() throws IOException {
+        if (noOfSeedsOption < 1 || noOfRepeatsOption < 1 || budgetOption < 1 || toleranceOption < 0) {
+            throw new IllegalArgumentException("at least 1 seed and repeat, positive budget and non-negative tolerance are expected");
+        }
+        List<int[]> shapes = shapesOption.stream().map(QualityBenchmark::parseShape).collect(Collectors.toList());
+        Map<String, String[]> baseline = baselineFileOption != null ? readBaseline() : new HashMap<>();
+        for (TablePlanner.Engine engine : enginesOption) {
+            warmUp(engine);
+        }
+        List<Run> runs = new ArrayList<>();
+        for (int[] shape : shapes) {
+            for (TablePlanner.Engine engine : enginesOption) {
+                for (long seed = 1; seed <= noOfSeedsOption; seed++) {
+                    Run run = new Run(shape, engine, seed);
+                    String[] expected = baseline.get(run.getKey());
+                    // at least the iterations of the baseline (and enough to reach its rating within the tolerance), however long they take
+                    run.execute(budgetOption, expected != null
+                            ? Math.max(Long.parseLong(expected[5]), getAllowedIterations(Long.parseLong(expected[10]))) : 0, noOfRepeatsOption);
+                    System.out.println(run.toCsv());
+                    runs.add(run);
+                }
+            }
+        }
+        if (outputFileOption != null) {
+            try (PrintWriter it = new PrintWriter(Files.newBufferedWriter(outputFileOption.toPath()))) {
+                it.println(HEADER);
+                runs.forEach(run -> it.println(run.toCsv()));
+            }
+        }
+        return baselineFileOption != null && !compareWithBaseline(runs, baseline) ? 1 : 0;
+    }
+
+    private void warmUp(TablePlanner.Engine engine) {
+        long deadline = System.nanoTime() + warmupOption * 1_000_000;
+        for (long seed = -1; System.nanoTime() < deadline; seed--) {
+            new Run(new int[]{50, 5, 5}, engine, seed).execute(Math.min(warmupOption, budgetOption), 0, 1);
+        }
+    }
+
+    /**
+     * @return baseline values by run key
+     */
+    private Map<String, String[]> readBaseline() throws IOException {
+        Map<String, String[]> baseline = new HashMap<>();
+        List<String> lines = Files.readAllLines(baselineFileOption.toPath());
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            throw new IllegalArgumentException("Baseline " + baselineFileOption + " is not a quality benchmark output");
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] values = line.split(",");
+            baseline.put(String.join(",", Arrays.copyOf(values, 5)), values);
+        }
+        return baseline;
+    }
+
+    private long getAllowedIterations(long iterations) {
+        return (long) Math.floor(iterations * (1 + toleranceOption));
+    }
+
+    private long getAllowedMillis(long millis) {
+        return Math.max((long) (millis * (1 + toleranceOption)), millis + MIN_TOLERANCE_MILLIS);
+    }
+
+    /**
+     * Runs of each shape and engine are compared together (time and iterations summed over seeds), so a single unlucky seed doesn't fail the comparison.
+     * Time catches slower planning, iterations catch a search needing more plans (even when each of them got faster).
+     *
+     * @return whether no shape and engine regressed
+     */
+    private boolean compareWithBaseline(List<Run> runs, Map<String, String[]> baseline) {
+        Map<String, long[]> groups = new LinkedHashMap<>(); // [baseline accepted, accepted, baseline iterations, iterations, not reached, baseline millis, millis]
+        for (Run run : runs) {
+            String[] expected = baseline.get(run.getKey());
+            if (expected == null) {
+                continue;
+            }
+            long[] group = groups.computeIfAbsent(run.getKey().substring(0, run.getKey().lastIndexOf(',')), key -> new long[7]);
+            double rating = Double.parseDouble(expected[11]);
+            long iterations = run.getIterationsToRating(rating);
+            long millis = run.getMillisToRating(rating);
+            group[0] += Boolean.parseBoolean(expected[6]) ? 1 : 0;
+            group[1] += run.accepted ? 1 : 0;
+            group[2] += Long.parseLong(expected[10]);
+            group[3] += iterations >= 0 ? iterations : run.iterations;
+            group[4] += iterations >= 0 ? 0 : 1;
+            group[5] += Long.parseLong(expected[9]);
+            group[6] += millis >= 0 ? millis : run.elapsedNanos / 1_000_000;
+        }
+        int regressions = 0;
+        for (Map.Entry<String, long[]> entry : groups.entrySet()) {
+            long[] group = entry.getValue();
+            String comparison = entry.getKey() + ": accepted " + group[1] + " (baseline " + group[0] + "), baseline ratings reached after "
+                    + group[3] + " iterations (baseline " + group[2] + (group[4] > 0 ? ", " + group[4] + " not reached" : "") + ") in "
+                    + group[6] + "ms (baseline " + group[5] + "ms)";
+            if (group[1] < group[0] || group[4] > 0 || group[6] > getAllowedMillis(group[5]) || group[3] > getAllowedIterations(group[2])) {
+                System.out.println("REGRESSION " + comparison);
+                regressions++;
+            } else {
+                System.out.println("OK " + comparison);
+            }
+        }
+        System.out.println(regressions == 0 ? "No regressions against " + baselineFileOption : regressions + " regression(s) against " + baselineFileOption);
+        return regressions == 0;
+    }
+
+    private static int[] parseShape(String shape) {
+        String[] values = shape.split(":");
+        try {
+            if (values.length == 3) {
+                int[] parsed = Arrays.stream(values).mapToInt(Integer::parseInt).toArray();
+                if (parsed[0] > 0 && parsed[1] > 1 && parsed[2] > 0) {
+                    return parsed;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Shape GUESTS:TABLES:SESSIONS is expected: " + shape);
+    }
+
+    /**
+     * Planning of one shape by one engine.
+     */
+    private static final class Run {
+        private final int[] shape;
+        private final TablePlanner.Engine engine;
+        private final long seed;
+        private final List<Long> improvementTimes = new ArrayList<>(); // nanos since start
+        private final List<Integer> improvementIterations = new ArrayList<>(); // 1-based iteration of the plan
+        private final List<Double> improvementRatings = new ArrayList<>();
+        private long budgetNanos;
+        private long elapsedNanos;
+        private int iterations;
+        private boolean accepted;
+        private long nanosToPerfect = -1;
+
+        /**
+         * @param budgetMillis  milliseconds to plan for
+         * @param minIterations iterations to plan at least, even after the budget
+         * @param repeats       times to plan (the first one decides the iterations, the others plan the same plans again)
+         */
+        private void execute(long budgetMillis, long minIterations, int repeats) {
+            budgetNanos = budgetMillis * 1_000_000;
+            plan(budgetNanos, minIterations, true);
+            for (int repeat = 1; repeat < repeats; repeat++) {
+                plan(0, iterations, false);
+            }
+        }
+
+        /**
+         * @param record whether to record the improvements (otherwise the same improvements are expected and only faster times are kept)
+         */
+        private void plan(long budgetNanos, long minIterations, boolean record) {
+            List<String> tableNames = IntStream.rangeClosed(1, shape[1]).mapToObj(Integer::toString).collect(Collectors.toList());
+            List<String> guestNames = IntStream.rangeClosed(1, shape[0]).mapToObj(Integer::toString).collect(Collectors.toList());
+            PlanFactory planFactory = new PlanFactory(shape[2], tableNames, guestNames, null);
+            PlanFilter filter = new PlanFilter(planFactory);
+            LargeNeighbourhoodSearch largeNeighbourhoodSearch = engine == TablePlanner.Engine.LNS ? new LargeNeighbourhoodSearch(planFactory) : null;
+            DecompositionSearch decompositionSearch = engine == TablePlanner.Engine.DECOMPOSE ? new DecompositionSearch(planFactory) : null;
+            SeenPlans seenPlans = new SeenPlans(1 << 16);
+            int iteration = 0;
+            int improvement = 0;
+            boolean perfect = false;
+            long start = System.nanoTime();
+            while ((System.nanoTime() - start < budgetNanos || iteration < minIterations) && !perfect) {
+                Random random = PlanFactory.iterationRandom(seed, iteration++);
+                TablePlan plan;
+                if (decompositionSearch != null) {
+                    plan = decompositionSearch.solve(random);
+                } else {
+                    plan = planFactory.newPlan(random);
+                    plan.seat();
+                }
+                if (!seenPlans.add(plan.getFingerprint())) {
+                    continue;
+                }
+                if (decompositionSearch == null) {
+                    plan.score();
+                }
+                if (largeNeighbourhoodSearch != null) {
+                    plan = largeNeighbourhoodSearch.improve(plan, random);
+                }
+                long elapsed = System.nanoTime() - start;
+                perfect = filter.isPerfect(plan);
+                if (!record) {
+                    if (improvement < improvementIterations.size() && improvementIterations.get(improvement) == iteration) {
+                        improvementTimes.set(improvement, Math.min(improvementTimes.get(improvement), elapsed));
+                        improvement++;
+                    }
+                    if (perfect) {
+                        nanosToPerfect = Math.min(nanosToPerfect, elapsed);
+                    }
+                    continue;
+                }
+                accepted |= filter.accepts(plan);
+                if (improvementRatings.isEmpty() || plan.getRating() < improvementRatings.get(improvementRatings.size() - 1)) {
+                    improvementTimes.add(elapsed);
+                    improvementIterations.add(iteration);
+                    improvementRatings.add(plan.getRating());
+                }
+                if (perfect) {
+                    nanosToPerfect = elapsed;
+                }
+            }
+            if (record) {
+                iterations = iteration;
+                elapsedNanos = System.nanoTime() - start;
+            }
+        }
+
+        /**
+         * @return iterations to the first plan rated as given or better, -1 if not reached
+         */
+        private long getIterationsToRating(double rating) {
+            for (int i = 0; i < improvementRatings.size(); i++) {
+                if (improvementRatings.get(i) <= rating) {
+                    return improvementIterations.get(i);
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return milliseconds to the first plan rated as given or better, -1 if not reached
+         */
+        private long getMillisToRating(double rating) {
+            for (int i = 0; i < improvementRatings.size(); i++) {
+                if (improvementRatings.get(i) <= rating) {
+                    return improvementTimes.get(i) / 1_000_000;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return best rating found within the fraction of the budget (or the first rating if found later)
+         */
+        private double getRatingAt(double fraction) {
+            double rating = improvementRatings.isEmpty() ? Double.NaN : improvementRatings.get(0);
+            for (int i = 1; i < improvementRatings.size() && improvementTimes.get(i) <= fraction * budgetNanos; i++) {
+                rating = improvementRatings.get(i);
+            }
+            return rating;
+        }
+
+        @NotNull
+        private String getKey() {
+            return shape[0] + "," + shape[1] + "," + shape[2] + "," + engine + "," + seed;
+        }
+
+        @NotNull
+        private String toCsv() {
+            double best = improvementRatings.get(improvementRatings.size() - 1);
+            return getKey() + "," + iterations + "," + accepted + "," + (nanosToPerfect >= 0) + "," + (nanosToPerfect >= 0 ? nanosToPerfect / 1_000_000 : -1)
+                    + "," + getMillisToRating(best) + "," + getIterationsToRating(best) + "," + best
+                    + "," + getRatingAt(0.25) + "," + getRatingAt(0.5) + "," + best;
+        }
+
+        private Run(int[] shape, TablePlanner.Engine engine, long seed) {
+            this.shape = shape;
+            this.engine = engine;
+            this.seed = seed;
+        }
+    }
+}
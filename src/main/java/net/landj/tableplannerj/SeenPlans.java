@@ -0,0 +1,49 @@
+package net.landj.tableplannerj;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free set of plan fingerprints seen so far, shared by worker threads.<p/>
+ * Open addressing with a few linear probes. When the probed slots are taken, the first of them is overwritten,
+ * so memory stays fixed and old fingerprints are forgotten (a forgotten plan is just scored again).
+ */
+public final class SeenPlans {
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    /**
+     * Add a fingerprint.
+     *
+     * @param fingerprint non zero fingerprint
+     * @return {@code true} if it wasn't seen before
+     */
+    public final boolean add(long fingerprint) {
+        int start = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (start + probe) & mask;
+            long current = slots.get(slot);
+            while (current == 0) {
+                if (slots.compareAndSet(slot, 0, fingerprint)) {
+                    return true;
+                }
+                current = slots.get(slot);
+            }
+            if (current == fingerprint) {
+                return false;
+            }
+        }
+        slots.set(start, fingerprint);
+        return true;
+    }
+
+    /**
+     * @param capacity number of fingerprints (rounded up to a power of 2)
+     */
+    public SeenPlans(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+}
@@ -1,28 +1,63 @@
 package net.landj.tableplannerj;
 
+import net.landj.tableplannerj.metrics.Metrics;
+import net.landj.tableplannerj.model.GuestAttributes;
+import net.landj.tableplannerj.model.MeetingHistory;
+import net.landj.tableplannerj.model.Objective;
+import net.landj.tableplannerj.model.PairingConstraints;
 import net.landj.tableplannerj.model.PlanFactory;
+import net.landj.tableplannerj.model.PlanFile;
+import net.landj.tableplannerj.model.PlanFilter;
+import net.landj.tableplannerj.model.SeriesPlan;
 import net.landj.tableplannerj.model.TablePlan;
+import net.landj.tableplannerj.search.DecompositionSearch;
+import net.landj.tableplannerj.search.LargeNeighbourhoodSearch;
+import net.landj.tableplannerj.search.ParetoFront;
+import net.landj.tableplannerj.search.SeatOrder;
+import net.landj.tableplannerj.search.SeriesSearch;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
-import static java.lang.Math.log;
-import static java.util.Comparator.comparingDouble;
+import static java.util.Comparator.comparingInt;
 import static java.util.stream.IntStream.rangeClosed;
 
 @Command(name = "tableplanner", version = "1.0-java")
 public final class TablePlanner implements Runnable {
     public static final double BASE_GUEST_RATING = 2.0;
-    public static final int FILE_SIZE_LIMIT = 1024;
+    public static final int FILE_SIZE_LIMIT = 256 * 1024;
+    public static final int MAX_TABLES = 100;
+    public static final int MAX_GUESTS = 5000;
+    /**
+     * Time of a batch of plans generated by one task (the batch size follows the measured time of a plan)
+     */
+    private static final long TARGET_BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int MAX_BATCH_SIZE = 1024;
+    /**
+     * Order of plans used when no plan passes the filters - fewest broken constraints first
+     */
+    private static final Comparator<TablePlan> FALLBACK_ORDER = comparingInt(TablePlan::getConstraintViolations).thenComparing(TablePlan::getExactRating);
 
     @Option(names = {"-t", "--tables"}, description = "Number of tables", defaultValue = "4")
     private int noOfTablesOption;
@@ -39,38 +74,155 @@ public final class TablePlanner implements Runnable {
     @Option(names = {"-o", "--output"}, description = "Output file (CSV)")
     private File csvFileOption;
 
+    @Option(names = {"-ob", "--output-binary"}, description = "Output file (binary plan)")
+    private File binaryFileOption;
+
+    @Option(names = {"-k", "--top"}, description = "Number of best distinct plans to write to --top-output", defaultValue = "0")
+    private int topOption;
+
+    @Option(names = {"-ko", "--top-output"}, description = "Output file for --top or --pareto plans (CSV by .csv extension, JSON Lines otherwise), written as plans are found")
+    private File topFileOption;
+
+    @Option(names = {"--pareto"}, description = "Keep plans on the Pareto front of separate objectives instead of filtering by follow-ups and table score")
+    private boolean paretoOption;
+
+    @Option(names = {"--convert"}, arity = "2", paramLabel = "FILE", description = "Convert a plan between CSV and binary (by .csv extension) instead of planning: <from> <to>")
+    private File[] convertOption;
+
     @Option(names = {"-it", "--iterations"}, description = "Number of possible runs", defaultValue = "10000")
     private int noOfIterationsOption;
 
     @Option(names = {"-th", "--threads"}, description = "Number of calculation threads", defaultValue = "8")
     private int noOfThreadsOption;
 
-    private final LinkedBlockingQueue<TablePlan> resultQueue = new LinkedBlockingQueue<>();
-    private ExecutorService executorService;
+    @Option(names = {"-pt", "--plan-threads"}, description = "Threads seating each round of a single plan in parallel, for very large events (1 seats guests one after another)", defaultValue = "1")
+    private int planThreadsOption;
+
+    @Option(names = {"-hi", "--history"}, description = "Meeting history file. Past meetings count against new pairings and the final plan is added to it")
+    private File historyFileOption;
+
+    @Option(names = {"--metrics"}, description = "Print metrics summary at the end")
+    private boolean metricsOption;
+
+    @Option(names = {"--metrics-json"}, description = "File to append metrics to as JSON lines periodically")
+    private File metricsJsonFileOption;
+
+    @Option(names = {"--metrics-interval"}, description = "Seconds between JSON metrics lines", defaultValue = "1")
+    private int metricsIntervalOption;
+
+    @Option(names = {"--seen-plans"}, description = "Number of plan fingerprints remembered to skip duplicate plans (0 to score all plans)", defaultValue = "1048576")
+    private int seenPlansOption;
+
+    @Option(names = {"--seed"}, description = "Seed of random numbers (random unless given), the same seed gives the same plans")
+    private Long seedOption;
+
+    @Option(names = {"-cp", "--checkpoint"}, description = "Checkpoint file written periodically and at the end, so the search can be resumed")
+    private File checkpointFileOption;
+
+    @Option(names = {"--checkpoint-interval"}, description = "Seconds between checkpoints", defaultValue = "10")
+    private int checkpointIntervalOption;
+
+    @Option(names = {"--resume"}, description = "Checkpoint file to resume the search from (same options are expected)")
+    private File resumeFileOption;
+
+    @Option(names = {"-e", "--engine"}, description = "Search engine: ${COMPLETION-CANDIDATES}", defaultValue = "RANDOM")
+    private Engine engineOption;
+
+    @Option(names = {"--events"}, description = "Number of recurring events of the same guests planned together as a series (each thread plans a series, iterations are not used)", defaultValue = "1")
+    private int noOfEventsOption;
+
+    @Option(names = {"--room-tables"}, description = "Tables in a room of the DECOMPOSE engine", defaultValue = "4")
+    private int roomTablesOption;
+
+    @Option(names = {"--seat-order"}, description = "Order guests around each table so neighbours are mostly people who haven't met before")
+    private boolean seatOrderOption;
+
+    private final LinkedBlockingQueue<List<Result>> resultQueue = new LinkedBlockingQueue<>();
+    private final AtomicInteger queuedResults = new AtomicInteger();
+    private final AtomicLong sampleNanos = new AtomicLong(); // average time of a plan (0 until measured)
+    private Iterator<Result> pendingResults = Collections.emptyIterator();
+    private ForkJoinPool executorService;
+    private ForkJoinPool seatingPool;
     private PlanFactory planFactory;
+    private MeetingHistory history;
+    private LargeNeighbourhoodSearch largeNeighbourhoodSearch;
+    private DecompositionSearch decompositionSearch;
+    private Metrics metrics;
+    private TopPlans topPlans;
+    private ParetoFront paretoFront;
+    private SeenPlans seenPlans;
+    private TopPlansWriter topPlansWriter;
+    private ExecutorService checkpointExecutor;
+    private Future<?> checkpointWrite;
+    private long seed;
+    private BitSet completed = new BitSet();
     private int processedResults;
-    private boolean solutionFound = false;
+    private int skippedResults;
+    private TablePlan bestPlan;
+    private TablePlan fallbackPlan;
+    private volatile boolean solutionFound = false;
 
     public void run() {
-        try {
+        if (convertOption != null) {
+            convert(convertOption[0], convertOption[1]);
+            return;
+        }
+        try (Metrics metrics = new Metrics(queuedResults::get).withFlightRecorder()) {
+            this.metrics = metrics;
             initialise();
+            if (metricsJsonFileOption != null) {
+                metrics.startReporting(metricsJsonFileOption, metricsIntervalOption);
+            }
+            if (noOfEventsOption > 1) {
+                planSeries();
+                return;
+            }
 
-            System.out.println("guests=" + planFactory.getNoOfGuests() + ", tables=" + planFactory.getNoOfTables() + ", sessions=" + planFactory.getNoOfSessions() + ", iterations=" + noOfIterationsOption);
+            System.out.println("guests=" + planFactory.getNoOfGuests() + ", tables=" + planFactory.getNoOfTables() + ", sessions=" + planFactory.getNoOfSessions() + ", iterations=" + noOfIterationsOption + ", engine=" + engineOption + ", seed=" + seed);
 
             double start = System.currentTimeMillis();
 
-            executorService.submit(new TablePlanner.PlansGenerator());
+            executorService.submit(new PlansGenerator((BitSet) completed.clone(), 0, noOfIterationsOption));
 
             TablePlan plan = this.processResults();
+            if (checkpointFileOption != null) {
+                writeFinalCheckpoint();
+            }
             long stop = System.currentTimeMillis();
-            System.out.println("Result in: " + ((double) stop - start) / (double) 1000 + " (results processed: " + this.processedResults + ')');
+            System.out.println("Result in: " + ((double) stop - start) / (double) 1000 + " (results processed: " + this.processedResults
+                    + ", duplicates skipped: " + TablePlannerJ.formatDouble(metrics.getDuplicateRate() * 100, 1) + "%)");
+            if (paretoFront != null) {
+                printParetoFront();
+            }
+            if (topPlansWriter != null) {
+                List<TopPlans.Entry> top = topPlans != null ? topPlans.getPlans() : paretoFront.getPlans();
+                topPlansWriter.close(top);
+                System.out.println("Top plans written: " + top.size() + (topPlans != null ? " (duplicates skipped: " + topPlans.getDuplicates() + ')' : ""));
+            }
 
+            SeatOrder seatOrder = seatOrderOption && plan != null ? orderSeats(plan.getSeating()) : null;
             executorService.shutdownNow();
+            if (seatingPool != null) {
+                seatingPool.shutdownNow();
+            }
+            if (metricsOption) {
+                System.out.println(metrics.getSummary());
+            }
             if (plan != null) {
                 plan.print();
+                if (seatOrder != null) {
+                    seatOrder.print();
+                }
                 if (csvFileOption != null) {
                     plan.outputToCsv(csvFileOption);
                 }
+                if (binaryFileOption != null) {
+                    PlanFile.write(binaryFileOption.toPath(), planFactory.getTableNames(), planFactory.getGuestNames(), plan.getSeating());
+                }
+                if (history != null) {
+                    history = history.record(planFactory.getTableNames(), planFactory.getGuestNames(), plan.getSeating());
+                    System.out.println("Meeting history updated (events: " + history.getNoOfEvents() + ')');
+                }
             } else {
                 System.out.println("No suitable result found!");
             }
@@ -81,16 +233,116 @@ public final class TablePlanner implements Runnable {
 
     }
 
+    /**
+     * Plan a series of events together, the best of the series planned by each thread is used.
+     */
+    private void planSeries() throws Exception {
+        System.out.println("guests=" + planFactory.getNoOfGuests() + ", tables=" + planFactory.getNoOfTables() + ", sessions=" + planFactory.getNoOfSessions() + ", events=" + noOfEventsOption + ", seed=" + seed);
+        long start = System.currentTimeMillis();
+        SeriesSearch seriesSearch = new SeriesSearch(planFactory, noOfEventsOption);
+        List<Future<SeriesPlan>> results = new ArrayList<>(noOfThreadsOption);
+        for (int i = 0; i < noOfThreadsOption; i++) {
+            Random random = PlanFactory.iterationRandom(seed, i);
+            results.add(executorService.submit(() -> seriesSearch.solve(random)));
+        }
+        SeriesPlan series = null;
+        for (Future<SeriesPlan> result : results) {
+            SeriesPlan candidate = result.get();
+            if (series == null || candidate.isBetterThan(series)) {
+                series = candidate;
+            }
+        }
+        // rated against a single event planned on its own, so the cost of spreading repeats over the series is visible
+        TablePlan standalone = seriesSearch.solveStandalone(PlanFactory.iterationRandom(seed, noOfThreadsOption));
+        SeatOrder seatOrder = null;
+        if (seatOrderOption) {
+            // rounds of all events one after another, so neighbours at earlier events count as met
+            int noOfSessions = planFactory.getNoOfSessions();
+            int[][] seating = new int[planFactory.getNoOfGuests()][series.getEvents().size() * noOfSessions];
+            for (int event = 0; event < series.getEvents().size(); event++) {
+                int[][] eventSeating = series.getEvents().get(event).getSeating();
+                for (int guest = 0; guest < seating.length; guest++) {
+                    System.arraycopy(eventSeating[guest], 0, seating[guest], event * noOfSessions, noOfSessions);
+                }
+            }
+            seatOrder = orderSeats(seating);
+        }
+        executorService.shutdownNow();
+        if (seatingPool != null) {
+            seatingPool.shutdownNow();
+        }
+        System.out.println("Result in: " + (System.currentTimeMillis() - start) / 1000.0 + " (series planned: " + results.size() + ')');
+        series.print(standalone);
+        if (seatOrder != null) {
+            seatOrder.print();
+        }
+        for (int event = 0; event < series.getEvents().size(); event++) {
+            TablePlan plan = series.getEvents().get(event);
+            if (csvFileOption != null) {
+                plan.outputToCsv(eventFile(csvFileOption, event));
+            }
+            if (binaryFileOption != null) {
+                PlanFile.write(eventFile(binaryFileOption, event).toPath(), planFactory.getTableNames(), planFactory.getGuestNames(), plan.getSeating());
+            }
+            if (history != null) {
+                history = history.record(planFactory.getTableNames(), planFactory.getGuestNames(), plan.getSeating());
+            }
+        }
+        if (history != null) {
+            System.out.println("Meeting history updated (events: " + history.getNoOfEvents() + ')');
+        }
+    }
+
+    /**
+     * Order guests around tables of the plan (before the seating pool is shut down).
+     */
+    private SeatOrder orderSeats(int[][] seating) {
+        long start = System.nanoTime();
+        SeatOrder seatOrder = new SeatOrder(planFactory, seating, seatingPool);
+        System.out.println("Seats ordered in: " + TablePlannerJ.formatDouble((System.nanoTime() - start) / 1e6, 1) + " ms");
+        return seatOrder;
+    }
+
+    /**
+     * @return file of an event in a series - event number (1-based) added to the name before the extension
+     */
+    private static File eventFile(File file, int event) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String eventName = dot > 0 ? name.substring(0, dot) + '-' + (event + 1) + name.substring(dot) : name + '-' + (event + 1);
+        return new File(file.getAbsoluteFile().getParentFile(), eventName);
+    }
+
+    private void convert(File from, File to) {
+        try {
+            PlanFile plan = isCsv(from) ? PlanFile.readCsv(from.toPath()) : PlanFile.read(from.toPath());
+            if (isCsv(to)) {
+                plan.writeCsv(to.toPath());
+            } else {
+                plan.write(to.toPath());
+            }
+            System.out.println("Converted " + from + " to " + to + " (tables=" + plan.getTableNames().size()
+                    + ", guests=" + plan.getGuestNames().size() + ", sessions=" + plan.getNoOfSessions() + ')');
+        } catch (Exception e) {
+            System.out.println("ERROR: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean isCsv(File file) {
+        return file.getName().toLowerCase().endsWith(".csv");
+    }
+
     private void validateOptions() {
         StringBuilder violations = new StringBuilder();
-        if (noOfTablesOption < 3 || noOfTablesOption > 5) {
-            violations.append("between 3 and 5 tables are supported");
+        if (noOfTablesOption < 3 || noOfTablesOption > MAX_TABLES) {
+            violations.append("between 3 and " + MAX_TABLES + " tables are supported");
         }
         if (noOfSessionsOption < 2 || noOfSessionsOption > 5) {
             if (violations.length() > 0) violations.append('\n');
             violations.append("between 2 and 5 sessions are supported");
         }
-        if (noOfGuestsOption < noOfTablesOption * 2 || noOfGuestsOption > 50) {
+        if (noOfGuestsOption < noOfTablesOption * 2 || noOfGuestsOption > MAX_GUESTS) {
             if (violations.length() > 0) violations.append('\n');
             violations.append("At least enough people for 1 guest at a table");
         }
@@ -100,15 +352,52 @@ public final class TablePlanner implements Runnable {
                         || !namesFileOption.canRead()
                         || namesFileOption.length() > FILE_SIZE_LIMIT)) {
             if (violations.length() > 0) violations.append('\n');
-            violations.append("Input file must exist and be readable with each file name on a separate line\"");
+            violations.append("Input file must exist and be readable with each file name (or constraint) on a separate line\"");
         }
         if (noOfIterationsOption < 100 || noOfIterationsOption > 1000000) {
             if (violations.length() > 0) violations.append('\n');
             violations.append("iterations between 100 and 1,000,000 are expected");
         }
-        if (noOfThreadsOption < 2 || noOfThreadsOption > 16) {
+        if (topOption < 0 || topOption > 1000 || topOption > 0 && (topFileOption == null || paretoOption)) {
             if (violations.length() > 0) violations.append('\n');
-            violations.append("2 threads minimum are required");
+            violations.append("top plans between 1 and 1,000 are expected together with top plans output file (and without Pareto front)");
+        }
+        if (topFileOption != null && topOption == 0 && !paretoOption) {
+            if (violations.length() > 0) violations.append('\n');
+            violations.append("top plans output file requires top plans or Pareto front");
+        }
+        if (seenPlansOption < 0 || seenPlansOption > 1 << 26) {
+            if (violations.length() > 0) violations.append('\n');
+            violations.append("seen plans between 0 and 67,108,864 are expected");
+        }
+        if (checkpointIntervalOption < 1) {
+            if (violations.length() > 0) violations.append('\n');
+            violations.append("checkpoint interval must be at least 1 second");
+        }
+        if (resumeFileOption != null && !resumeFileOption.isFile()) {
+            if (violations.length() > 0) violations.append('\n');
+            violations.append("checkpoint to resume from must exist");
+        }
+        if (metricsIntervalOption < 1) {
+            if (violations.length() > 0) violations.append('\n');
+            violations.append("metrics interval must be at least 1 second");
+        }
+        if (planThreadsOption < 1 || planThreadsOption > 64) {
+            if (violations.length() > 0) violations.append('\n');
+            violations.append("plan threads between 1 and 64 are expected");
+        }
+        if (noOfEventsOption < 1 || noOfEventsOption > 24
+                || noOfEventsOption > 1 && (checkpointFileOption != null || resumeFileOption != null || topOption > 0 || paretoOption)) {
+            if (violations.length() > 0) violations.append('\n');
+            violations.append("between 1 and 24 events are expected (a series can't be checkpointed and doesn't keep top plans or Pareto front)");
+        }
+        if (roomTablesOption < 1) {
+            if (violations.length() > 0) violations.append('\n');
+            violations.append("at least 1 table in a room is expected");
+        }
+        if (noOfThreadsOption < 1 || noOfThreadsOption > 16) {
+            if (violations.length() > 0) violations.append('\n');
+            violations.append("between 1 and 16 threads are supported");
         }
         if (violations.length() > 0) {
             throw new IllegalArgumentException(violations.toString());
@@ -117,98 +406,390 @@ public final class TablePlanner implements Runnable {
 
     private void initialise() throws IOException {
         validateOptions();
-        executorService = Executors.newFixedThreadPool(noOfThreadsOption);
+        executorService = new ForkJoinPool(noOfThreadsOption);
         planFactory = initialisePlanFactory();
+        if (engineOption == Engine.LNS) {
+            largeNeighbourhoodSearch = new LargeNeighbourhoodSearch(planFactory);
+        } else if (engineOption == Engine.DECOMPOSE) {
+            decompositionSearch = new DecompositionSearch(planFactory, roomTablesOption);
+        }
+        if (seenPlansOption > 0) {
+            seenPlans = new SeenPlans(seenPlansOption);
+        }
+        if (paretoOption) {
+            paretoFront = new ParetoFront();
+        }
+        if (topOption > 0) {
+            topPlans = new TopPlans(topOption);
+        }
+        if (topFileOption != null) {
+            topPlansWriter = new TopPlansWriter(topFileOption.toPath(), planFactory.getTableNames(), planFactory.getGuestNames(), planFactory.getNoOfSessions());
+        }
+        if (resumeFileOption != null) {
+            resume(Checkpoint.read(resumeFileOption.toPath()));
+        } else {
+            seed = seedOption != null ? seedOption : ThreadLocalRandom.current().nextLong();
+        }
+        if (checkpointFileOption != null) {
+            checkpointExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void resume(Checkpoint checkpoint) {
+        checkpoint.validate(planFactory, engineOption.name(), getInputsHash(), noOfIterationsOption);
+        seed = checkpoint.getSeed();
+        completed = checkpoint.getCompleted();
+        processedResults = checkpoint.getProcessedResults();
+        skippedResults = checkpoint.getSkippedResults();
+        bestPlan = checkpoint.getBestSeating() != null ? planFactory.rebuildPlan(checkpoint.getBestSeating()) : null;
+        fallbackPlan = checkpoint.getFallbackSeating() != null ? planFactory.rebuildPlan(checkpoint.getFallbackSeating()) : null;
+        if (topPlans != null) {
+            PlanFilter filter = new PlanFilter(planFactory);
+            checkpoint.getTopPlans().forEach(entry -> topPlans.restore(entry, filter.isPerfect(planFactory.rebuildPlan(entry.getSeating()))));
+        }
+        if (paretoFront != null) {
+            checkpoint.getParetoFront().forEach(paretoFront::restore);
+        }
+        System.out.println("Resumed from " + resumeFileOption + " (iterations done: " + (processedResults + skippedResults) + ')');
+    }
+
+    /**
+     * @return hash of the inputs of the plan factory and settings of the engine (rooms of {@link Engine#DECOMPOSE})
+     */
+    private long getInputsHash() {
+        return engineOption == Engine.DECOMPOSE ? 31 * planFactory.getInputsHash() + roomTablesOption : planFactory.getInputsHash();
+    }
+
+    /**
+     * Snapshot of the search (consumer thread only).
+     */
+    private Checkpoint checkpoint() {
+        return new Checkpoint(seed, engineOption.name(), getInputsHash(), noOfIterationsOption, planFactory.getNoOfSessions(),
+                planFactory.getTableNames(), planFactory.getGuestNames(), (BitSet) completed.clone(), processedResults, skippedResults,
+                bestPlan != null ? bestPlan.getSeating() : null,
+                fallbackPlan != null ? fallbackPlan.getSeating() : null,
+                topPlans != null ? topPlans.getPlans() : Collections.emptyList(),
+                paretoFront != null ? paretoFront.getPlans() : Collections.emptyList());
+    }
+
+    /**
+     * Write a checkpoint in the background unless the previous one is still being written.
+     */
+    private void writeCheckpointInBackground() throws InterruptedException {
+        if (checkpointWrite != null) {
+            if (!checkpointWrite.isDone()) {
+                return;
+            }
+            reportCheckpointFailure();
+        }
+        Checkpoint checkpoint = checkpoint();
+        checkpointWrite = checkpointExecutor.submit(() -> {
+            checkpoint.write(checkpointFileOption.toPath());
+            return null;
+        });
+    }
+
+    private void writeFinalCheckpoint() throws IOException, InterruptedException {
+        if (checkpointWrite != null) {
+            reportCheckpointFailure();
+        }
+        checkpointExecutor.shutdown();
+        checkpoint().write(checkpointFileOption.toPath());
+    }
+
+    private void reportCheckpointFailure() throws InterruptedException {
+        try {
+            checkpointWrite.get();
+        } catch (ExecutionException e) {
+            System.out.println("WARNING: checkpoint not written: " + e.getCause().getMessage());
+        }
     }
 
     private PlanFactory initialisePlanFactory() throws IOException {
         List<String> tableNames;
         List<String> guestNames;
+        List<String> constraintLines = new ArrayList<>();
+        int[] capacities = null;
+        GuestAttributes attributes = null;
 
         if (namesFileOption != null) {
-            List<String> names = Files.readAllLines(namesFileOption.toPath());
-            if (names.size() < noOfTablesOption * 2 || names.size() > 50) {
-                throw new IllegalArgumentException("Names for at least 1 host and 1 guest for each table are required and no more than 50 names");
+            InputFile input = InputFile.read(namesFileOption.toPath());
+            List<String> names = input.getNames();
+            if (names.size() < noOfTablesOption * 2 || names.size() > MAX_GUESTS + noOfTablesOption) {
+                throw new IllegalArgumentException("Names for at least 1 host and 1 guest for each table are required and no more than " + MAX_GUESTS + " guests");
             }
             tableNames = names.subList(0, noOfTablesOption);
             guestNames = names.subList(noOfTablesOption, names.size());
+            capacities = input.getCapacities(noOfTablesOption);
+            attributes = GuestAttributes.of(rangeClosed(noOfTablesOption, names.size() - 1).mapToObj(input::getProperties).collect(Collectors.toList()));
+            constraintLines = input.getConstraintLines();
         } else {
             tableNames = rangeClosed(1, noOfTablesOption).mapToObj(Integer::toString).collect(Collectors.toList());
             guestNames = rangeClosed(1, noOfGuestsOption).mapToObj(Integer::toString).collect(Collectors.toList());
         }
 
-        return new PlanFactory(noOfSessionsOption, tableNames, guestNames, null);
-    }
+        if (historyFileOption != null) {
+            history = MeetingHistory.load(historyFileOption.toPath());
+        }
 
-    /**
-     * How many times do we allow 2 guests to follow each other up to the following table.<p/>
-     * Depending on number of guests and tables, it might be necessary for 2 to follow each other up to the next table.
-     * If this is the case we don't the same 2 keep following each other up but to share the burden between other guests as well.
-     * @return maximum number of follow ups we allow to accept
-     */
-    private int determineMaxFollowUps() {
-        double logResult = log(noOfGuestsOption) / log(noOfTablesOption);
-        int logResultInt = (int) logResult;
-        return logResult - logResultInt > 0.0 ? logResultInt + 1 : logResultInt;
-    }
+        PairingConstraints constraints = constraintLines.isEmpty() ? null : PairingConstraints.parse(constraintLines, tableNames, guestNames);
 
-    /**
-     * Determine perfect score to allow terminate iterations early.<p/>
-     * At the moment we know perfect score certainly for cases where the number of guests is up to the maximum where each guest can move around without seeing anyone twice.
-     * @return perfect plan score
-     */
-    private double determinePerfectRating() {
-        return planFactory.getNoOfGuests() == planFactory.getIdealSeatingThreshold()
-                ? BASE_GUEST_RATING // all other plan ranking parameters should be their ideal 1
-                : BASE_GUEST_RATING * 2; // all but table score should be at ideal 1. table score will be 2 as the number of guests is not the same at each table every round
+        if (planThreadsOption > 1) {
+            seatingPool = new ForkJoinPool(planThreadsOption);
+        }
+        return new PlanFactory(noOfSessionsOption, tableNames, guestNames, null, history, constraints, capacities, attributes, seatingPool);
     }
 
     private TablePlan processResults() throws InterruptedException {
-        List<TablePlan> filteredPlans = new ArrayList<>();
-        List<TablePlan> allPlans = new ArrayList<>();
-
-        int maxFollowUps = determineMaxFollowUps();
-        // don't rely on table score if number or tables and sessions is not aligned (table score filter below wasn't designed for that)
-        boolean ignoreTableScore = noOfTablesOption - noOfSessionsOption >= 1;
-        double perfectRating = determinePerfectRating();
+        PlanFilter filter = new PlanFilter(planFactory);
+        long checkpointInterval = TimeUnit.SECONDS.toNanos(checkpointIntervalOption);
+        long nextCheckpoint = System.nanoTime() + checkpointInterval;
+        if (bestPlan != null && filter.isPerfect(bestPlan) && topPlans == null && paretoFront == null) {
+            // resumed after a perfect solution was found
+            solutionFound = true;
+            return bestPlan;
+        }
 
-        while (processedResults < noOfIterationsOption) {
-            TablePlan plan = resultQueue.take();
+        while (processedResults + skippedResults < noOfIterationsOption) {
+            long waitStart = System.nanoTime();
+            if (checkpointFileOption != null && waitStart >= nextCheckpoint) {
+                // between results, so completed iterations match processed results
+                writeCheckpointInBackground();
+                nextCheckpoint = waitStart + checkpointInterval;
+            }
+            Result result = nextResult();
+            long taken = System.nanoTime();
+            metrics.recordQueueWait(taken - waitStart, queuedResults.get());
+            completed.set(result.iteration);
+            TablePlan plan = result.plan;
+            if (plan == null) {
+                // equivalent plan was seen before, it wasn't even scored
+                skippedResults++;
+                continue;
+            }
             processedResults++;
 
-            if (plan.getRating() == perfectRating) {
-                // don't look any further, we found a perfect solution
-                solutionFound = true;
-                return plan;
-            } else if (plan.getFollowUps().getMax() <= maxFollowUps && (ignoreTableScore || plan.getTableScore() == 1.0)) {
-                // filter out plans where there are too many follow ups (over the threshold)
-                // where there is ideally spread seating (all hosts see the same amount of guests)
-                filteredPlans.add(plan);
-            }
+            try {
+                if (fallbackPlan == null || FALLBACK_ORDER.compare(plan, fallbackPlan) < 0) {
+                    fallbackPlan = plan;
+                }
+                if (plan.getConstraintViolations() > 0) {
+                    // never use plans breaking hard constraints unless there is nothing else
+                    metrics.recordRejected(Metrics.Rejection.CONSTRAINTS);
+                    continue;
+                }
+
+                if (paretoFront != null) {
+                    // no filters, dominated plans are dropped straight away instead of being kept
+                    TopPlans.Entry entry = paretoFront.offer(plan);
+                    if (entry == null) {
+                        metrics.recordRejected(Metrics.Rejection.DOMINATED);
+                    } else if (topPlansWriter != null) {
+                        topPlansWriter.submit(entry);
+                    }
+                    if (filter.isPerfect(plan)) {
+                        solutionFound = true;
+                        return plan;
+                    }
+                    continue;
+                }
 
-            allPlans.add(plan);
+                if (filter.isPerfect(plan)) {
+                    offerTopPlan(plan, true);
+                    offerBestPlan(plan);
+                    if (topPlans == null || topPlans.isPerfect()) {
+                        // don't look any further, we found a perfect solution (or enough of them)
+                        solutionFound = true;
+                        return plan;
+                    }
+                } else if (filter.hasTooManyFollowUps(plan)) {
+                    metrics.recordRejected(Metrics.Rejection.FOLLOW_UPS);
+                } else if (filter.hasUnevenTables(plan)) {
+                    metrics.recordRejected(Metrics.Rejection.TABLE_SCORE);
+                } else {
+                    offerTopPlan(plan, false);
+                    offerBestPlan(plan);
+                }
+            } finally {
+                metrics.recordProcessed(plan, System.nanoTime() - taken);
+            }
         }
 
-        if (filteredPlans.size() > 0) {
+        if (paretoFront != null && paretoFront.size() > 0) {
+            solutionFound = true;
+            return planFactory.rebuildPlan(paretoFront.getPlans().get(0).getSeating());
+        } else if (bestPlan != null) {
             solutionFound = true;
-            return filteredPlans.stream().min(comparingDouble(TablePlan::getRating)).get();
+            return bestPlan;
         } else {
             // this might happen if there is not enough iterations to get a chance to get to a nice result
             System.out.println("What?");
-            return allPlans.stream().min(comparingDouble(TablePlan::getRating)).orElseThrow(() -> new IllegalStateException("There must be at least 1 plan"));
+            if (fallbackPlan == null) {
+                throw new IllegalStateException("There must be at least 1 plan");
+            }
+            return fallbackPlan;
+        }
+    }
+
+    /**
+     * @return next result of the current batch, or of the next batch (waiting for it)
+     */
+    private Result nextResult() throws InterruptedException {
+        if (!pendingResults.hasNext()) {
+            pendingResults = resultQueue.take().iterator();
         }
+        queuedResults.decrementAndGet();
+        return pendingResults.next();
     }
 
-    public final class PlansGenerator implements Runnable {
-        public void run() {
-            for (int i = 0; i < noOfIterationsOption && !solutionFound; i++) {
-                executorService.submit(() -> {
-                    TablePlan plan = planFactory.newPlan();
-                    plan.run();
-                    resultQueue.offer(plan);
-                });
+    private void offerBestPlan(TablePlan plan) {
+        if (bestPlan == null || plan.getExactRating().compareTo(bestPlan.getExactRating()) < 0) {
+            bestPlan = plan;
+        }
+    }
+
+    private void printParetoFront() {
+        System.out.println("Pareto front: " + paretoFront.size() + " plans (dominated: " + paretoFront.getDominated() + ')');
+        StringBuilder header = new StringBuilder("\tRATING");
+        for (Objective objective : Objective.values()) {
+            header.append('\t').append(objective);
+        }
+        System.out.println(header);
+        for (TopPlans.Entry entry : paretoFront.getPlans()) {
+            StringBuilder line = new StringBuilder("\t").append(TablePlannerJ.formatDouble(entry.getRating(), 2));
+            for (double value : entry.getObjectives()) {
+                line.append('\t').append(TablePlannerJ.formatDouble(value, 2));
             }
+            System.out.println(line);
+        }
+    }
 
+    /**
+     * Seat a new plan and score it unless an equivalent plan was seen before.<p/>
+     * Random numbers come from the seed and the iteration, so each iteration gives the same plan whenever it runs.
+     *
+     * @return scored plan or {@code null} for a plan seen before
+     */
+    private TablePlan newDistinctPlan(int iteration) {
+        Random random = PlanFactory.iterationRandom(seed, iteration);
+        TablePlan plan;
+        if (decompositionSearch != null) {
+            // rated while rebuilt
+            plan = decompositionSearch.solve(random);
+        } else {
+            plan = planFactory.newPlan(random);
+            plan.seat();
+        }
+        if (seenPlans != null && !seenPlans.add(plan.getFingerprint())) {
+            metrics.recordDuplicate();
+            return null;
+        }
+        if (decompositionSearch == null) {
+            plan.score();
+        }
+        metrics.recordGenerated(plan);
+        if (largeNeighbourhoodSearch != null) {
+            plan = largeNeighbourhoodSearch.improve(plan, random);
         }
+        return plan;
+    }
+
+    private void offerTopPlan(TablePlan plan, boolean perfect) {
+        if (topPlans != null) {
+            TopPlans.Entry entry = topPlans.offer(plan, perfect);
+            if (entry != null) {
+                topPlansWriter.submit(entry);
+            }
+        }
+    }
+
+    public enum Engine {
+        /**
+         * Independent random plans (random restarts)
+         */
+        RANDOM,
+        /**
+         * Random plans improved by {@link LargeNeighbourhoodSearch}
+         */
+        LNS,
+        /**
+         * Plans of small rooms solved in parallel and combined by {@link DecompositionSearch}, for very large events
+         */
+        DECOMPOSE
+    }
+
+    private static final class Result {
+        private final int iteration;
+        private final TablePlan plan;
+
+        private Result(int iteration, TablePlan plan) {
+            this.iteration = iteration;
+            this.plan = plan;
+        }
+    }
+
+    /**
+     * Generates plans of a range of iterations on the work-stealing pool.<p/>
+     * The range is split in halves (the other half can be stolen by an idle worker) down to a batch taking about
+     * {@link #TARGET_BATCH_NANOS}, sized by the average time of a plan measured so far. A batch generates its plans
+     * one after another, checking whether a solution was found before each of them, and hands them to the consumer at once,
+     * so a plan doesn't pay for a task of its own and a queue operation.
+     */
+    private final class PlansGenerator extends RecursiveAction {
+        private static final long serialVersionUID = 1L; // never serialized, tasks only live on the pool
+
+        private final BitSet completed;
+        private final int from;
+        private final int to;
+
+        @Override
+        protected void compute() {
+            if (solutionFound) {
+                return;
+            }
+            if (to - from > getBatchSize()) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PlansGenerator(completed, from, middle), new PlansGenerator(completed, middle, to));
+                return;
+            }
+            long start = System.nanoTime();
+            List<Result> results = new ArrayList<>(to - from);
+            for (int i = completed.nextClearBit(from); i < to && !solutionFound; i = completed.nextClearBit(i + 1)) {
+                results.add(new Result(i, newDistinctPlan(i)));
+            }
+            if (!results.isEmpty()) {
+                recordSampleNanos((System.nanoTime() - start) / results.size());
+                queuedResults.addAndGet(results.size());
+                resultQueue.offer(results);
+            }
+        }
+
+        /**
+         * @param completed iterations to skip (already processed before resuming)
+         * @param from      first iteration
+         * @param to        iteration after the last one
+         */
+        private PlansGenerator(BitSet completed, int from, int to) {
+            this.completed = completed;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * @return number of plans of a batch taking about {@link #TARGET_BATCH_NANOS} (1 until the time of a plan is known)
+     */
+    private int getBatchSize() {
+        long nanos = sampleNanos.get();
+        return nanos == 0 ? 1 : (int) Math.max(1, Math.min(MAX_BATCH_SIZE, TARGET_BATCH_NANOS / nanos));
+    }
+
+    private void recordSampleNanos(long nanos) {
+        // moving average, so batches follow plans getting slower or faster (e.g. after compilation)
+        sampleNanos.accumulateAndGet(Math.max(nanos, 1), (average, sample) -> average == 0 ? sample : (7 * average + sample) / 8);
     }
 }
@@ -5,9 +5,13 @@ import picocli.CommandLine;
 
 public final class TablePlannerJ {
     public static void main(@NotNull String[] args) {
-        new CommandLine(new TablePlanner())
+        int exitCode = new CommandLine(new TablePlanner())
                 .addSubcommand(new CommandLine.HelpCommand())
+                .addSubcommand(new QualityBenchmark())
                 .execute(args);
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
     }
 
     public static String formatDouble(double d, int digits) {
@@ -0,0 +1,142 @@
+package net.landj.tableplannerj;
+
+import net.landj.tableplannerj.model.Objective;
+import net.landj.tableplannerj.model.TablePlan;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * K best distinct plans (lowest rating), kept in a bounded heap with the worst of them on top.<p/>
+ * Equivalent plans (by {@link TablePlan#getFingerprint()}) are kept only once.
+ * Perfect plans (see {@link net.landj.tableplannerj.model.PlanFilter#isPerfect(TablePlan)}) are counted, so the search can stop
+ * once all K plans are perfect without comparing ratings.
+ * Not thread safe, used by the results consumer only.
+ */
+public final class TopPlans {
+    private final int size;
+    private final PriorityQueue<Entry> heap;
+    private final Set<Long> hashes = new HashSet<>();
+    private final Set<Long> perfectHashes = new HashSet<>();
+    private int duplicates;
+
+    /**
+     * Offer a plan.
+     *
+     * @param perfect whether the plan is perfect
+     * @return entry if the plan is one of the K best so far, {@code null} otherwise
+     */
+    public final Entry offer(@NotNull TablePlan plan, boolean perfect) {
+        double rating = plan.getRating();
+        if (heap.size() == size && rating >= heap.peek().getRating()) {
+            return null;
+        }
+        long hash = plan.getFingerprint();
+        if (!hashes.add(hash)) {
+            duplicates++;
+            return null;
+        }
+        if (heap.size() == size) {
+            long worst = heap.poll().getHash();
+            hashes.remove(worst);
+            perfectHashes.remove(worst);
+        }
+        Entry entry = new Entry(plan, hash);
+        heap.add(entry);
+        if (perfect) {
+            perfectHashes.add(hash);
+        }
+        return entry;
+    }
+
+    /**
+     * Add a plan kept before (e.g. from a {@link Checkpoint}).
+     *
+     * @param perfect whether the plan is perfect
+     */
+    public final void restore(@NotNull Entry entry, boolean perfect) {
+        if (heap.size() < size && hashes.add(entry.getHash())) {
+            heap.add(entry);
+            if (perfect) {
+                perfectHashes.add(entry.getHash());
+            }
+        }
+    }
+
+    public final boolean isFull() {
+        return heap.size() == size;
+    }
+
+    /**
+     * @return whether there are K plans and all of them are perfect (no better plan can be found)
+     */
+    public final boolean isPerfect() {
+        return isFull() && perfectHashes.size() == size;
+    }
+
+    public final int getDuplicates() {
+        return this.duplicates;
+    }
+
+    /**
+     * @return top plans from the best
+     */
+    @NotNull
+    public final List<Entry> getPlans() {
+        List<Entry> plans = new ArrayList<>(heap);
+        plans.sort(Comparator.comparingDouble(Entry::getRating));
+        return plans;
+    }
+
+    public TopPlans(int size) {
+        this.size = size;
+        this.heap = new PriorityQueue<>(size, Comparator.comparingDouble(Entry::getRating).reversed());
+    }
+
+    public static final class Entry {
+        private final double rating;
+        private final long hash;
+        private final int[][] seating;
+        private final double[] objectives;
+
+        public final double getRating() {
+            return this.rating;
+        }
+
+        public final long getHash() {
+            return this.hash;
+        }
+
+        /**
+         * @return table index for each guest (first dimension) and round (second dimension)
+         */
+        @NotNull
+        public final int[][] getSeating() {
+            return this.seating;
+        }
+
+        /**
+         * @return value of each {@link Objective} (by ordinal)
+         */
+        @NotNull
+        public final double[] getObjectives() {
+            return this.objectives;
+        }
+
+        public Entry(@NotNull TablePlan plan, long hash) {
+            this(plan.getRating(), hash, plan.getSeating(), Objective.getValues(plan));
+        }
+
+        public Entry(double rating, long hash, @NotNull int[][] seating, @NotNull double[] objectives) {
+            this.rating = rating;
+            this.hash = hash;
+            this.seating = seating;
+            this.objectives = objectives;
+        }
+    }
+}
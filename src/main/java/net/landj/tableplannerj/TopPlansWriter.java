@@ -0,0 +1,175 @@
+package net.landj.tableplannerj;
+
+import net.landj.tableplannerj.model.Objective;
+import net.landj.tableplannerj.model.PlanFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Writes {@link TopPlans} entries from a background thread, so output never blocks the results consumer.<p/>
+ * Each plan entering the top plans is appended to the file straight away (partial results are on disk during long runs).
+ * When closed, the file is replaced with the final top plans from the best.<br/>
+ * Format is chosen by extension: CSV ({@code .csv}) with plan number, rating and seating of each guest per line,
+ * otherwise JSON Lines with one plan per line (including each {@link Objective}).
+ */
+public final class TopPlansWriter implements AutoCloseable {
+    private static final TopPlans.Entry END = new TopPlans.Entry(0, 0, new int[0][], new double[0]);
+
+    private final Path file;
+    private final boolean csv;
+    private final List<String> tableNames;
+    private final List<String> guestNames;
+    private final int noOfSessions;
+    private final BlockingQueue<TopPlans.Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile IOException failure;
+    private int written;
+
+    /**
+     * Queue a plan to be written (never blocks).
+     */
+    public final void submit(@NotNull TopPlans.Entry entry) {
+        queue.add(entry);
+    }
+
+    private void writeQueued() {
+        try (PrintWriter it = new PrintWriter(Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            writeHeader(it);
+            for (TopPlans.Entry entry = queue.take(); entry != END; entry = queue.take()) {
+                write(it, ++written, entry);
+                if (queue.isEmpty()) {
+                    it.flush();
+                }
+            }
+            if (it.checkError()) {
+                failure = new IOException("Failed to write " + file);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait for queued plans to be written and replace the file with given final plans.
+     *
+     * @param plans final top plans from the best
+     */
+    public final void close(@NotNull List<TopPlans.Entry> plans) throws IOException {
+        close();
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (PrintWriter it = new PrintWriter(Files.newBufferedWriter(temp))) {
+                writeHeader(it);
+                for (int i = 0; i < plans.size(); i++) {
+                    write(it, i + 1, plans.get(i));
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Wait for queued plans to be written.
+     *
+     * @throws InterruptedIOException when interrupted while waiting (the interrupt flag is kept)
+     */
+    @Override
+    public void close() throws IOException {
+        if (thread.isAlive()) {
+            queue.add(END);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing " + file);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeHeader(PrintWriter it) {
+        if (csv) {
+            it.print("Plan,Rating,Guests");
+            for (int i = 1; i <= noOfSessions; i++) {
+                it.printf(",Round %d", i);
+            }
+            it.println();
+        }
+    }
+
+    private void write(PrintWriter it, int number, TopPlans.Entry entry) {
+        String rating = Double.toString(entry.getRating());
+        int[][] seating = entry.getSeating();
+        if (csv) {
+            for (int guest = 0; guest < seating.length; guest++) {
+                it.print(number + "," + rating + ',' + PlanFile.toCsvField(guestNames.get(guest)));
+                for (int table : seating[guest]) {
+                    it.print(',' + PlanFile.toCsvField(tableNames.get(table)));
+                }
+                it.println();
+            }
+        } else {
+            it.print("{\"plan\":" + number + ",\"rating\":" + rating + ",\"hash\":\"" + Long.toHexString(entry.getHash()) + '"');
+            for (Objective objective : Objective.values()) {
+                it.print(",\"" + objective.name().toLowerCase() + "\":" + entry.getObjectives()[objective.ordinal()]);
+            }
+            it.print(",\"seating\":{");
+            for (int guest = 0; guest < seating.length; guest++) {
+                it.print((guest > 0 ? "," : "") + quote(guestNames.get(guest)) + ":[");
+                for (int round = 0; round < seating[guest].length; round++) {
+                    it.print((round > 0 ? "," : "") + quote(tableNames.get(seating[guest][round])));
+                }
+                it.print(']');
+            }
+            it.println("}}");
+        }
+    }
+
+    private static String quote(String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Start the writer thread.
+     *
+     * @param file       output file (CSV by {@code .csv} extension, JSON Lines otherwise)
+     * @param tableNames hosts
+     * @param guestNames guests
+     */
+    public TopPlansWriter(@NotNull Path file, @NotNull List<String> tableNames, @NotNull List<String> guestNames, int noOfSessions) {
+        this.file = file;
+        this.csv = file.getFileName().toString().toLowerCase().endsWith(".csv");
+        this.tableNames = tableNames;
+        this.guestNames = guestNames;
+        this.noOfSessions = noOfSessions;
+        this.thread = new Thread(this::writeQueued, "top-plans-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+}
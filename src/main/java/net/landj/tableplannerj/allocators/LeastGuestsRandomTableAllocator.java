@@ -8,21 +8,21 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 /**
- * Allocate random table with least guests (with randomness).<p/>
+ * Allocate random table with least guests relative to its capacity (with randomness).<p/>
  * When there are multiple such tables, pick a random one.
  */
 public final class LeastGuestsRandomTableAllocator extends NextTableAllocator {
     @NotNull
-    public Table nextTable(@NotNull Guest guest, @NotNull List<Table> tables, int round) {
-        List<Pair<Integer, Table>> tablesBySuitability = tables.stream()
-                .filter(guest::hasNotSatAt)
-                .map(table -> new ImmutablePair<>(table.getNoOfGuestsAtTable(round), table))
-                .sorted(Comparator.comparingInt(entry -> entry.left)).collect(Collectors.toList());
+    public Table nextTable(@NotNull Guest guest, @NotNull List<Table> tables, int round, @NotNull Random random) {
+        List<Pair<Double, Table>> tablesBySuitability = availableTables(guest, tables, round)
+                .map(table -> new ImmutablePair<>(table.getLoad(round), table))
+                .sorted(Comparator.comparingDouble(entry -> entry.left)).collect(Collectors.toList());
 
-        return randomise(tablesBySuitability.stream()
+        return randomise(random, tablesBySuitability.stream()
                 .filter(pair -> pair.getLeft().equals(tablesBySuitability.get(0).getLeft()))
                 .map(Pair::getRight)
                 .collect(Collectors.toList()));
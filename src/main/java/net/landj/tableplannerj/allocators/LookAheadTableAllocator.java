@@ -8,6 +8,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 /**
@@ -19,19 +20,18 @@ import java.util.stream.Collectors;
  */
 public final class LookAheadTableAllocator extends NextTableAllocator {
     @NotNull
-    public Table nextTable(@NotNull Guest guest, @NotNull List<Table> tables, int round) {
-        List<Pair<Double, Table>> tablesBySuitability = tables.stream()
-                .filter(guest::hasNotSatAt)
+    public Table nextTable(@NotNull Guest guest, @NotNull List<Table> tables, int round, @NotNull Random random) {
+        List<Pair<Double, Table>> tablesBySuitability = availableTables(guest, tables, round)
                 .map(table -> new ImmutablePair<>(scoreWithGuestInRound(table, guest, round), table))
                 .sorted(Comparator.comparingDouble(Pair::getLeft)).collect(Collectors.toList());
 
-        return randomise(tablesBySuitability.stream()
+        return randomise(random, tablesBySuitability.stream()
                 .filter(pair -> pair.getLeft().equals(tablesBySuitability.get(0).getLeft()))
                 .map(Pair::getRight)
                 .collect(Collectors.toList()));
     }
 
     private double scoreWithGuestInRound(Table table, Guest guest, int round) {
-        return Guest.calculateScore(guest, table.getGuestsAtTableInRound(round));
+        return Guest.calculateScore(guest, table.getOccupants(round));
     }
 }
@@ -6,14 +6,26 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Stream;
 
 public abstract class NextTableAllocator {
-    private final Random random = new Random();
-
+    /**
+     * Pick a table for the guest.<p/>
+     * Allocators are shared by all plans, randomness comes from the plan being seated.
+     *
+     * @param random random numbers of the plan
+     */
     @NotNull
-    public abstract Table nextTable(@NotNull Guest guest, @NotNull List<Table> tables, int round);
+    public abstract Table nextTable(@NotNull Guest guest, @NotNull List<Table> tables, int round, @NotNull Random random);
+
+    /**
+     * Tables the guest can sit at in given round (not visited before, not forbidden and with a free seat).
+     */
+    protected Stream<Table> availableTables(@NotNull Guest guest, @NotNull List<Table> tables, int round) {
+        return tables.stream().filter(table -> guest.canSitAt(table) && table.hasSpaceIn(round));
+    }
 
-    public Table randomise(List<Table> pool) {
+    public Table randomise(Random random, List<Table> pool) {
         return pool.get(random.nextInt(pool.size()));
     }
 }
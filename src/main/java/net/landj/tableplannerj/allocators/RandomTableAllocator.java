@@ -5,6 +5,7 @@ import net.landj.tableplannerj.model.Table;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 /**
@@ -13,7 +14,7 @@ import java.util.stream.Collectors;
  */
 public final class RandomTableAllocator extends NextTableAllocator {
     @NotNull
-    public Table nextTable(@NotNull Guest guest, @NotNull List<Table> tables, int round) {
-        return randomise(tables.stream().filter(guest::hasNotSatAt).collect(Collectors.toList()));
+    public Table nextTable(@NotNull Guest guest, @NotNull List<Table> tables, int round, @NotNull Random random) {
+        return randomise(random, availableTables(guest, tables, round).collect(Collectors.toList()));
     }
 }
@@ -0,0 +1,176 @@
+package net.landj.tableplannerj.api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor shared by concurrent searches, dividing a fixed number of workers by earliest deadline first.<p/>
+ * Searches of {@link PlanRequest}s with a deadline (see {@link TablePlannerService}) queue each batch of plans with the deadline
+ * and priority of the request. A free worker always takes the task with the earliest deadline, tasks with the same deadline
+ * by higher priority, then in the order they came. Searches go back to the queue after each batch, so a large search
+ * with a distant deadline gives way to urgent small ones instead of starving them, and the number of busy threads
+ * never exceeds the number of workers however many searches run.<br/>
+ * Tasks without a deadline (e.g. delivery of improvements to subscribers, or other work given to the executor)
+ * are due straight away, searches without a deadline run when nothing else is due.<p/>
+ * Searches with a deadline are counted as on time when they finish before it, late when they hand back
+ * their best plan so far at the deadline.
+ */
+public final class DeadlineScheduler implements Executor, AutoCloseable {
+    /**
+     * Deadline of searches without a deadline, run after everything else
+     */
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    private final Thread[] workers;
+    private final long start = System.nanoTime();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger onTime = new AtomicInteger();
+    private final AtomicInteger late = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Run the task as soon as possible (due straight away).
+     */
+    @Override
+    public void execute(@NotNull Runnable command) {
+        execute(command, System.nanoTime(), 0);
+    }
+
+    /**
+     * Queue the task by its deadline.
+     *
+     * @param deadlineNanos {@link System#nanoTime()} when the task is due ({@link #NO_DEADLINE} to run when nothing else is due)
+     * @param priority      order of tasks with the same deadline (higher first)
+     */
+    final void execute(@NotNull Runnable command, long deadlineNanos, int priority) {
+        if (closed) {
+            throw new RejectedExecutionException("Scheduler is closed");
+        }
+        long deadline = deadlineNanos == NO_DEADLINE ? NO_DEADLINE : deadlineNanos - start;
+        queue.add(new Task(command, deadline, priority, sequence.getAndIncrement()));
+    }
+
+    /**
+     * Count a search with a deadline.
+     */
+    final void recordDeadline(boolean met) {
+        (met ? onTime : late).incrementAndGet();
+    }
+
+    public final int getNoOfWorkers() {
+        return this.workers.length;
+    }
+
+    /**
+     * @return number of tasks waiting for a worker
+     */
+    public final int getQueueSize() {
+        return this.queue.size();
+    }
+
+    /**
+     * @return number of searches finished before their deadline
+     */
+    public final int getOnTime() {
+        return this.onTime.get();
+    }
+
+    /**
+     * @return number of searches which reached their deadline (and gave the best plan found so far)
+     */
+    public final int getLate() {
+        return this.late.get();
+    }
+
+    /**
+     * @return share of searches with a deadline finished before it (1 when there were none)
+     */
+    public final double getHitRate() {
+        int onTime = getOnTime();
+        int all = onTime + getLate();
+        return all > 0 ? ((double) onTime) / all : 1.0;
+    }
+
+    /**
+     * Stop the workers, tasks still in the queue are dropped (searches using the scheduler are not completed).
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        queue.clear();
+    }
+
+    private void work() {
+        while (!closed) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                task.command.run();
+            } catch (RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * @param noOfWorkers number of threads running the tasks
+     */
+    public DeadlineScheduler(int noOfWorkers) {
+        if (noOfWorkers < 1) {
+            throw new IllegalArgumentException("At least 1 worker is required");
+        }
+        this.workers = new Thread[noOfWorkers];
+        for (int i = 0; i < noOfWorkers; i++) {
+            Thread worker = new Thread(this::work, "table-planner-scheduler-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            this.workers[i] = worker;
+        }
+    }
+
+    /**
+     * Scheduler with a worker for each available processor.
+     */
+    public DeadlineScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    private static final class Task implements Comparable<Task> {
+        private final Runnable command;
+        private final long deadline; // nanos since start of the scheduler
+        private final int priority;
+        private final long sequence;
+
+        @Override
+        public int compareTo(@NotNull Task other) {
+            if (deadline != other.deadline) {
+                return Long.compare(deadline, other.deadline);
+            }
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        private Task(Runnable command, long deadline, int priority, long sequence) {
+            this.command = command;
+            this.deadline = deadline;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package net.landj.tableplannerj.api;
+
+import net.landj.tableplannerj.TablePlanner;
+import net.landj.tableplannerj.model.PlanFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * What to plan and how long to search, submitted to {@link TablePlannerService}.<p/>
+ * Plans are generated from the seed and the iteration number, so the same request gives the same result
+ * regardless of the executor or other requests running at the same time.<br/>
+ * A request can have a deadline, when the search gives the best plan found so far (then the result depends on timing).
+ * On a {@link DeadlineScheduler}, the deadline and priority also decide which search runs first.
+ */
+public final class PlanRequest {
+    public static final int DEFAULT_SEEN_PLANS = 1 << 16;
+
+    private final PlanFactory planFactory;
+    private final int noOfIterations;
+    private final long seed;
+    private final TablePlanner.Engine engine;
+    private final int seenPlans;
+    private final Instant deadline;
+    private final int priority;
+
+    @NotNull
+    public final PlanFactory getPlanFactory() {
+        return this.planFactory;
+    }
+
+    public final int getNoOfIterations() {
+        return this.noOfIterations;
+    }
+
+    public final long getSeed() {
+        return this.seed;
+    }
+
+    @NotNull
+    public final TablePlanner.Engine getEngine() {
+        return this.engine;
+    }
+
+    /**
+     * @return number of plan fingerprints remembered to skip duplicate plans (0 to score all plans)
+     */
+    public final int getSeenPlans() {
+        return this.seenPlans;
+    }
+
+    /**
+     * @return when the search gives the best plan found so far ({@code null} for no deadline)
+     */
+    public final Instant getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * @return order of searches with the same deadline on a {@link DeadlineScheduler} (higher first)
+     */
+    public final int getPriority() {
+        return this.priority;
+    }
+
+    /**
+     * Request with a random seed and independent random plans.
+     */
+    public PlanRequest(@NotNull PlanFactory planFactory, int noOfIterations) {
+        this(planFactory, noOfIterations, ThreadLocalRandom.current().nextLong(), TablePlanner.Engine.RANDOM, DEFAULT_SEEN_PLANS);
+    }
+
+    public PlanRequest(@NotNull PlanFactory planFactory, int noOfIterations, long seed, @NotNull TablePlanner.Engine engine, int seenPlans) {
+        this(planFactory, noOfIterations, seed, engine, seenPlans, null, 0);
+    }
+
+    /**
+     * @param deadline when the search gives the best plan found so far ({@code null} for no deadline)
+     * @param priority order of searches with the same deadline on a {@link DeadlineScheduler} (higher first)
+     */
+    public PlanRequest(@NotNull PlanFactory planFactory, int noOfIterations, long seed, @NotNull TablePlanner.Engine engine, int seenPlans,
+                       Instant deadline, int priority) {
+        if (noOfIterations < 1) {
+            throw new IllegalArgumentException("At least 1 iteration is required");
+        }
+        if (seenPlans < 0) {
+            throw new IllegalArgumentException("Number of seen plans can't be negative");
+        }
+        this.planFactory = planFactory;
+        this.noOfIterations = noOfIterations;
+        this.seed = seed;
+        this.engine = engine;
+        this.seenPlans = seenPlans;
+        this.deadline = deadline;
+        this.priority = priority;
+    }
+}
@@ -0,0 +1,72 @@
+package net.landj.tableplannerj.api;
+
+import net.landj.tableplannerj.model.PlanFilter;
+import net.landj.tableplannerj.model.TablePlan;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Outcome of a {@link PlanRequest}.<p/>
+ * The plan is the best one passing the {@link PlanFilter}, or the best one of all (fewest broken constraints first)
+ * when none passed, as the command line does.
+ */
+public final class PlanResult {
+    private final TablePlan plan;
+    private final boolean accepted;
+    private final boolean perfect;
+    private final int processedResults;
+    private final int skippedResults;
+    private final boolean deadlineReached;
+
+    @NotNull
+    public final TablePlan getPlan() {
+        return this.plan;
+    }
+
+    /**
+     * @return whether the plan passed the filters
+     */
+    public final boolean isAccepted() {
+        return this.accepted;
+    }
+
+    /**
+     * @return whether the search stopped early with a perfect plan
+     */
+    public final boolean isPerfect() {
+        return this.perfect;
+    }
+
+    /**
+     * @return number of plans scored
+     */
+    public final int getProcessedResults() {
+        return this.processedResults;
+    }
+
+    /**
+     * @return number of plans skipped as equivalent to plans seen before
+     */
+    public final int getSkippedResults() {
+        return this.skippedResults;
+    }
+
+    /**
+     * @return whether the search was stopped by the deadline of the request (the plan is the best one found so far)
+     */
+    public final boolean isDeadlineReached() {
+        return this.deadlineReached;
+    }
+
+    public PlanResult(@NotNull TablePlan plan, boolean accepted, boolean perfect, int processedResults, int skippedResults) {
+        this(plan, accepted, perfect, processedResults, skippedResults, false);
+    }
+
+    public PlanResult(@NotNull TablePlan plan, boolean accepted, boolean perfect, int processedResults, int skippedResults, boolean deadlineReached) {
+        this.plan = plan;
+        this.accepted = accepted;
+        this.perfect = perfect;
+        this.processedResults = processedResults;
+        this.skippedResults = skippedResults;
+        this.deadlineReached = deadlineReached;
+    }
+}
@@ -0,0 +1,280 @@
+package net.landj.tableplannerj.api;
+
+import net.landj.tableplannerj.SeenPlans;
+import net.landj.tableplannerj.TablePlanner;
+import net.landj.tableplannerj.model.PlanFactory;
+import net.landj.tableplannerj.model.PlanFilter;
+import net.landj.tableplannerj.model.TablePlan;
+import net.landj.tableplannerj.search.DecompositionSearch;
+import net.landj.tableplannerj.search.LargeNeighbourhoodSearch;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.min;
+
+/**
+ * A running search started by {@link TablePlannerService}.<p/>
+ * Tasks on the executor take batches of iterations in turn, each task goes back to the executor after its batch.
+ * Plans are merged under a lock as they are scored, the same way the command line does it
+ * (best plan passing the {@link PlanFilter}, best plan of all as a fallback). Plans with the same rating are ordered
+ * by iteration, so the result doesn't depend on the timing of tasks (unless a perfect plan stops the search early).<br/>
+ * Cancelling the result (or calling {@link #cancel()}) stops the search: tasks check it before each plan,
+ * finish the plan in progress and don't go back to the executor.<p/>
+ * When the request has a deadline, the result is completed with the best plan so far when the deadline comes
+ * (whether or not a task of the search is running), which stops the search the same way.
+ * On a {@link DeadlineScheduler}, each batch is queued with the deadline and priority of the request.
+ */
+public final class PlanSearch {
+    private static final int BATCH_SIZE = 32;
+    private static final long MAX_DEADLINE_SECONDS = TimeUnit.DAYS.toSeconds(365);
+
+    private final PlanRequest request;
+    private final Executor executor;
+    private final DeadlineScheduler scheduler;
+    private final long deadlineNanos;
+    private final PlanFactory planFactory;
+    private final PlanFilter filter;
+    private final LargeNeighbourhoodSearch largeNeighbourhoodSearch;
+    private final DecompositionSearch decompositionSearch;
+    private final SeenPlans seenPlans;
+    private final CompletableFuture<PlanResult> result = new CompletableFuture<>();
+    private final SubmissionPublisher<TablePlan> improvements;
+    private final AtomicInteger nextIteration = new AtomicInteger();
+    private final AtomicInteger activeTasks;
+    private final Object lock = new Object();
+    private int processedResults;
+    private int skippedResults;
+    private TablePlan bestPlan;
+    private int bestIteration;
+    private TablePlan fallbackPlan;
+    private int fallbackIteration;
+
+    /**
+     * Result of the search, completed when all iterations are done or a perfect plan is found.<p/>
+     * Cancelling it stops the search.
+     */
+    @NotNull
+    public final CompletableFuture<PlanResult> getResult() {
+        return this.result;
+    }
+
+    /**
+     * Publisher of plans passing the filters, each better than the previous one.<p/>
+     * Plans are delivered on the executor of the service and never block the search: when a subscriber's buffer is full,
+     * plans are dropped for it. Subscribers are completed with the result (or its failure, including cancellation).
+     */
+    @NotNull
+    public final Flow.Publisher<TablePlan> getImprovements() {
+        return this.improvements;
+    }
+
+    /**
+     * Stop the search, its result is cancelled.
+     */
+    public final void cancel() {
+        result.cancel(false);
+    }
+
+    /**
+     * @return number of iterations done so far (plans scored or skipped as duplicates)
+     */
+    public final int getCompletedIterations() {
+        synchronized (lock) {
+            return processedResults + skippedResults;
+        }
+    }
+
+    final void start() {
+        if (deadlineNanos != DeadlineScheduler.NO_DEADLINE) {
+            long delay = Math.max(deadlineNanos - System.nanoTime(), 0);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(this::reachDeadline);
+        }
+        for (int i = activeTasks.get(); i > 0; i--) {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        try {
+            if (scheduler != null) {
+                scheduler.execute(this::runBatch, deadlineNanos, request.getPriority());
+            } else {
+                executor.execute(this::runBatch);
+            }
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            finishTask();
+        }
+    }
+
+    private void runBatch() {
+        try {
+            int first = nextIteration.getAndAdd(BATCH_SIZE);
+            int last = min(first + BATCH_SIZE, request.getNoOfIterations());
+            for (int iteration = first; iteration < last && !result.isDone(); iteration++) {
+                process(iteration);
+            }
+            if (!result.isDone() && nextIteration.get() < request.getNoOfIterations()) {
+                // back to the executor, so other searches sharing it get their turn
+                schedule();
+                return;
+            }
+        } catch (RuntimeException | Error e) {
+            result.completeExceptionally(e);
+        }
+        finishTask();
+    }
+
+    private void process(int iteration) {
+        Random random = PlanFactory.iterationRandom(request.getSeed(), iteration);
+        TablePlan plan;
+        if (decompositionSearch != null) {
+            plan = decompositionSearch.solve(random);
+        } else {
+            plan = planFactory.newPlan(random);
+            plan.seat();
+        }
+        if (seenPlans != null && !seenPlans.add(plan.getFingerprint())) {
+            synchronized (lock) {
+                skippedResults++;
+            }
+            return;
+        }
+        if (decompositionSearch == null) {
+            plan.score();
+        }
+        if (largeNeighbourhoodSearch != null) {
+            plan = largeNeighbourhoodSearch.improve(plan, random);
+        }
+        offer(iteration, plan);
+    }
+
+    private void offer(int iteration, TablePlan plan) {
+        synchronized (lock) {
+            processedResults++;
+            if (fallbackPlan == null || isBefore(plan, iteration, fallbackPlan, fallbackIteration)) {
+                fallbackPlan = plan;
+                fallbackIteration = iteration;
+            }
+            if (!filter.accepts(plan)) {
+                return;
+            }
+            int order = bestPlan == null ? -1 : plan.getExactRating().compareTo(bestPlan.getExactRating());
+            boolean improved = order < 0;
+            if (improved || order == 0 && iteration < bestIteration) {
+                bestPlan = plan;
+                bestIteration = iteration;
+            }
+            if (improved && !result.isDone()) {
+                improvements.offer(plan, null);
+            }
+            if (filter.isPerfect(plan)) {
+                // don't look any further, we found a perfect solution
+                result.complete(new PlanResult(plan, true, true, processedResults, skippedResults));
+            }
+        }
+    }
+
+    /**
+     * Order of plans used when no plan passes the filters - fewest broken constraints first.
+     */
+    private static boolean isBefore(TablePlan plan, int iteration, TablePlan other, int otherIteration) {
+        if (plan.getConstraintViolations() != other.getConstraintViolations()) {
+            return plan.getConstraintViolations() < other.getConstraintViolations();
+        }
+        int order = plan.getExactRating().compareTo(other.getExactRating());
+        return order < 0 || order == 0 && iteration < otherIteration;
+    }
+
+    private void finishTask() {
+        if (activeTasks.decrementAndGet() > 0) {
+            return;
+        }
+        synchronized (lock) {
+            if (bestPlan != null) {
+                result.complete(new PlanResult(bestPlan, true, false, processedResults, skippedResults));
+            } else if (fallbackPlan != null) {
+                result.complete(new PlanResult(fallbackPlan, false, false, processedResults, skippedResults));
+            } else {
+                result.completeExceptionally(new IllegalStateException("There must be at least 1 plan"));
+            }
+        }
+    }
+
+    /**
+     * Hand back the best plan found so far.
+     */
+    private void reachDeadline() {
+        synchronized (lock) {
+            if (result.isDone()) {
+                return;
+            }
+            if (bestPlan != null) {
+                result.complete(new PlanResult(bestPlan, true, false, processedResults, skippedResults, true));
+            } else if (fallbackPlan != null) {
+                result.complete(new PlanResult(fallbackPlan, false, false, processedResults, skippedResults, true));
+            } else {
+                result.completeExceptionally(new TimeoutException("Deadline reached before any plan was found"));
+            }
+        }
+    }
+
+    private void recordDeadline(PlanResult planResult, Throwable failure) {
+        if (scheduler == null || deadlineNanos == DeadlineScheduler.NO_DEADLINE || failure instanceof CancellationException) {
+            return;
+        }
+        scheduler.recordDeadline(failure == null && !planResult.isDeadlineReached() && System.nanoTime() - deadlineNanos <= 0);
+    }
+
+    private static long toDeadlineNanos(PlanRequest request) {
+        if (request.getDeadline() == null) {
+            return DeadlineScheduler.NO_DEADLINE;
+        }
+        Duration remaining = Duration.between(Instant.now(), request.getDeadline());
+        if (remaining.isNegative()) {
+            return System.nanoTime();
+        }
+        return System.nanoTime() + (remaining.getSeconds() > MAX_DEADLINE_SECONDS ? TimeUnit.SECONDS.toNanos(MAX_DEADLINE_SECONDS) : remaining.toNanos());
+    }
+
+    private void closeImprovements(Throwable failure) {
+        synchronized (lock) {
+            if (failure == null) {
+                improvements.close();
+            } else {
+                improvements.closeExceptionally(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+            }
+        }
+    }
+
+    PlanSearch(@NotNull PlanRequest request, @NotNull Executor executor, int parallelism) {
+        this.request = request;
+        this.executor = executor;
+        this.scheduler = executor instanceof DeadlineScheduler ? (DeadlineScheduler) executor : null;
+        this.deadlineNanos = toDeadlineNanos(request);
+        this.planFactory = request.getPlanFactory();
+        this.filter = new PlanFilter(planFactory);
+        this.largeNeighbourhoodSearch = request.getEngine() == TablePlanner.Engine.LNS ? new LargeNeighbourhoodSearch(planFactory) : null;
+        this.decompositionSearch = request.getEngine() == TablePlanner.Engine.DECOMPOSE ? new DecompositionSearch(planFactory) : null;
+        this.seenPlans = request.getSeenPlans() > 0 ? new SeenPlans(request.getSeenPlans()) : null;
+        this.improvements = new SubmissionPublisher<>(executor, Flow.defaultBufferSize());
+        this.activeTasks = new AtomicInteger(min(parallelism, (request.getNoOfIterations() + BATCH_SIZE - 1) / BATCH_SIZE));
+        this.result.whenComplete((planResult, failure) -> {
+            recordDeadline(planResult, failure);
+            closeImprovements(failure);
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package net.landj.tableplannerj.api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Entry point for embedding the planner, without any console output.<p/>
+ * Searches run on the executor given by the caller, which can be shared by any number of concurrent searches
+ * (and other work). Each search keeps at most {@code parallelism} tasks on the executor at a time and every task
+ * goes back to the executor after a small batch of plans, so concurrent searches take turns instead of queueing behind each other.<br/>
+ * With a {@link DeadlineScheduler} as the executor, the turns go by deadlines of the requests (earliest first).
+ */
+public final class TablePlannerService {
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * Start a search.
+     *
+     * @return running search, with the result and plans found on the way
+     */
+    @NotNull
+    public final PlanSearch submit(@NotNull PlanRequest request) {
+        PlanSearch search = new PlanSearch(request, executor, parallelism);
+        search.start();
+        return search;
+    }
+
+    /**
+     * Start a search when only the result is needed.
+     *
+     * @return result, cancelling it stops the search
+     */
+    @NotNull
+    public final CompletableFuture<PlanResult> plan(@NotNull PlanRequest request) {
+        return submit(request).getResult();
+    }
+
+    /**
+     * @param executor    executor running the searches (not shut down by the service)
+     * @param parallelism maximum number of tasks of a single search on the executor at a time
+     */
+    public TablePlannerService(@NotNull Executor executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Service running each search on all available processors.
+     */
+    public TablePlannerService(@NotNull Executor executor) {
+        this(executor, Runtime.getRuntime().availableProcessors());
+    }
+}
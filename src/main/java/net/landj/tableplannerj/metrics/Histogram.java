@@ -0,0 +1,134 @@
+package net.landj.tableplannerj.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed memory histogram of positive values with log-linear buckets (similar to HdrHistogram).<p/>
+ * Each power of 2 is split into {@code 2 ^ SUB_BUCKET_BITS} buckets, so values are kept with ~3% precision.
+ * Values outside of the range are counted in the first or the last bucket.<br/>
+ * Min, max and mean are exact, quantiles are within the bucket precision.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int MIN_EXPONENT = -16;
+    private static final int MAX_EXPONENT = 48;
+    private static final int NO_OF_BUCKETS = (MAX_EXPONENT - MIN_EXPONENT + 1) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NO_OF_BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAccumulator min = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+    public final void record(double value) {
+        counts.incrementAndGet(bucket(value));
+        totalCount.increment();
+        sum.add(value);
+        min.accumulate(value);
+        max.accumulate(value);
+    }
+
+    public final long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    public final double getMin() {
+        return getTotalCount() > 0 ? min.get() : 0;
+    }
+
+    public final double getMax() {
+        return getTotalCount() > 0 ? max.get() : 0;
+    }
+
+    public final double getMean() {
+        long count = getTotalCount();
+        return count > 0 ? sum.sum() / count : 0;
+    }
+
+    /**
+     * Value at given quantile, e.g. 0.5 for median or 0.99 for 99th percentile.<p/>
+     * Middle of the bucket holding the quantile, clamped to the recorded min and max.
+     *
+     * @param quantile 0 to 1
+     * @return value at quantile (0 if nothing was recorded)
+     */
+    public final double getValueAtQuantile(double quantile) {
+        long count = getTotalCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < NO_OF_BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                double middle = (getLowerBound(bucket) + getLowerBound(bucket + 1)) / 2;
+                return Math.min(Math.max(middle, getMin()), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public final long getCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    public final int getNoOfBuckets() {
+        return NO_OF_BUCKETS;
+    }
+
+    /**
+     * @return number of powers of 2 covered by buckets
+     */
+    public static int getNoOfRanges() {
+        return MAX_EXPONENT - MIN_EXPONENT + 1;
+    }
+
+    /**
+     * @return lowest value counted in the bucket
+     */
+    public static double getLowerBound(int bucket) {
+        int exponent = (bucket >> SUB_BUCKET_BITS) + MIN_EXPONENT;
+        int subBucket = bucket & ((1 << SUB_BUCKET_BITS) - 1);
+        return Math.scalb(1.0 + ((double) subBucket) / (1 << SUB_BUCKET_BITS), exponent);
+    }
+
+    static int bucket(double value) {
+        if (!(value >= Double.MIN_NORMAL)) {
+            return 0;
+        }
+        int exponent = Math.getExponent(value);
+        if (exponent < MIN_EXPONENT) {
+            return 0;
+        }
+        if (exponent > MAX_EXPONENT) {
+            return NO_OF_BUCKETS - 1;
+        }
+        long mantissa = Double.doubleToRawLongBits(value) & 0x000fffffffffffffL;
+        int subBucket = (int) (mantissa >>> (52 - SUB_BUCKET_BITS));
+        return ((exponent - MIN_EXPONENT) << SUB_BUCKET_BITS) | subBucket;
+    }
+
+    /**
+     * Non-empty buckets as JSON object (lower bound of the bucket: count).
+     */
+    @NotNull
+    public final String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int bucket = 0; bucket < NO_OF_BUCKETS; bucket++) {
+            long count = counts.get(bucket);
+            if (count > 0) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append('"').append(getLowerBound(bucket)).append("\":").append(count);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,260 @@
+package net.landj.tableplannerj.metrics;
+
+import net.landj.tableplannerj.model.TablePlan;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import jdk.jfr.FlightRecorder;
+
+import static net.landj.tableplannerj.TablePlannerJ.formatDouble;
+
+/**
+ * Metrics of a single plan search.<p/>
+ * Recorded from worker threads (generated plans) and the consumer thread (processed plans).
+ * Available as a summary, periodic JSON lines and JFR events ({@link PlanGeneratedEvent}, {@link MetricsSnapshotEvent}).
+ */
+public final class Metrics implements AutoCloseable {
+    private final long startNanos = System.nanoTime();
+    private final IntSupplier queueDepth;
+    private final Runnable snapshotHook = this::emitSnapshot;
+
+    private final LongAdder plansGenerated = new LongAdder();
+    private final LongAdder duplicatePlans = new LongAdder();
+    private final LongAdder seatingNanos = new LongAdder();
+    private final LongAdder scoringNanos = new LongAdder();
+    private final LongAdder plansProcessed = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder reductionNanos = new LongAdder();
+    private final LongAdder queueDepthTotal = new LongAdder();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+    private final LongAdder rejectedByFollowUps = new LongAdder();
+    private final LongAdder rejectedByTableScore = new LongAdder();
+    private final LongAdder rejectedByConstraints = new LongAdder();
+    private final LongAdder rejectedAsDominated = new LongAdder();
+    private final Histogram ratings = new Histogram();
+    private final RatingStatistics ratingStatistics = new RatingStatistics();
+
+    private ScheduledExecutorService reporter;
+    private PrintWriter jsonWriter;
+
+    public enum Rejection {
+        FOLLOW_UPS,
+        TABLE_SCORE,
+        CONSTRAINTS,
+        DOMINATED
+    }
+
+    /**
+     * Plan was generated by a worker thread.
+     */
+    public final void recordGenerated(@NotNull TablePlan plan) {
+        plansGenerated.increment();
+        seatingNanos.add(plan.getSeatingNanos());
+        scoringNanos.add(plan.getScoringNanos());
+
+        PlanGeneratedEvent event = new PlanGeneratedEvent();
+        if (event.shouldCommit()) {
+            event.rating = plan.getRating();
+            event.seatingNanos = plan.getSeatingNanos();
+            event.scoringNanos = plan.getScoringNanos();
+            event.commit();
+        }
+    }
+
+    /**
+     * Worker seated a plan equivalent to one seen before (skipped before scoring).
+     */
+    public final void recordDuplicate() {
+        duplicatePlans.increment();
+    }
+
+    /**
+     * @return share of seated plans which were duplicates
+     */
+    public final double getDuplicateRate() {
+        long duplicates = duplicatePlans.sum();
+        long seated = duplicates + plansGenerated.sum();
+        return seated > 0 ? ((double) duplicates) / seated : 0;
+    }
+
+    /**
+     * Consumer waited for a plan.
+     *
+     * @param nanos time spent waiting
+     * @param depth number of plans left in the queue
+     */
+    public final void recordQueueWait(long nanos, int depth) {
+        queueWaitNanos.add(nanos);
+        queueDepthTotal.add(depth);
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /**
+     * Consumer processed a plan.
+     *
+     * @param nanos time spent processing
+     */
+    public final void recordProcessed(@NotNull TablePlan plan, long nanos) {
+        plansProcessed.increment();
+        reductionNanos.add(nanos);
+        ratings.record(plan.getRating());
+        ratingStatistics.record(plan);
+    }
+
+    public final void recordRejected(@NotNull Rejection rejection) {
+        switch (rejection) {
+            case FOLLOW_UPS:
+                rejectedByFollowUps.increment();
+                break;
+            case TABLE_SCORE:
+                rejectedByTableScore.increment();
+                break;
+            case CONSTRAINTS:
+                rejectedByConstraints.increment();
+                break;
+            case DOMINATED:
+                rejectedAsDominated.increment();
+                break;
+        }
+    }
+
+    @NotNull
+    public final Histogram getRatings() {
+        return this.ratings;
+    }
+
+    @NotNull
+    public final RatingStatistics getRatingStatistics() {
+        return this.ratingStatistics;
+    }
+
+    public final double getPlansPerSecond() {
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? plansGenerated.sum() / seconds : 0;
+    }
+
+    private double getElapsedSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    /**
+     * Write metrics as JSON lines to given file periodically (and once more when closed).
+     */
+    public final void startReporting(@NotNull File file, long intervalSeconds) throws IOException {
+        jsonWriter = new PrintWriter(new FileWriter(file, true), true);
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> jsonWriter.println(toJson()), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Register periodic JFR event (only emitted when enabled in a recording).<p/>
+     * Only done when the flight recorder was started with the JVM (e.g. {@code -XX:StartFlightRecording}),
+     * registering the event starts it up otherwise, which takes longer than a small plan.
+     */
+    public final Metrics withFlightRecorder() {
+        if (FlightRecorder.isInitialized()) {
+            FlightRecorder.addPeriodicEvent(MetricsSnapshotEvent.class, snapshotHook);
+        }
+        return this;
+    }
+
+    private void emitSnapshot() {
+        MetricsSnapshotEvent event = new MetricsSnapshotEvent();
+        event.plansGenerated = plansGenerated.sum();
+        event.plansProcessed = plansProcessed.sum();
+        event.plansPerSecond = getPlansPerSecond();
+        event.rejectedByFollowUps = rejectedByFollowUps.sum();
+        event.rejectedByTableScore = rejectedByTableScore.sum();
+        event.rejectedByConstraints = rejectedByConstraints.sum();
+        event.queueDepth = queueDepth.getAsInt();
+        event.queueWaitNanos = queueWaitNanos.sum();
+        event.commit();
+    }
+
+    @NotNull
+    public final String toJson() {
+        return "{\"elapsedSeconds\":" + getElapsedSeconds()
+                + ",\"plansGenerated\":" + plansGenerated.sum()
+                + ",\"duplicatePlans\":" + duplicatePlans.sum()
+                + ",\"duplicateRate\":" + getDuplicateRate()
+                + ",\"plansProcessed\":" + plansProcessed.sum()
+                + ",\"plansPerSecond\":" + getPlansPerSecond()
+                + ",\"seatingMillis\":" + seatingNanos.sum() / 1e6
+                + ",\"scoringMillis\":" + scoringNanos.sum() / 1e6
+                + ",\"queueWaitMillis\":" + queueWaitNanos.sum() / 1e6
+                + ",\"reductionMillis\":" + reductionNanos.sum() / 1e6
+                + ",\"queueDepth\":" + queueDepth.getAsInt()
+                + ",\"maxQueueDepth\":" + maxQueueDepth.get()
+                + ",\"rejectedByFollowUps\":" + rejectedByFollowUps.sum()
+                + ",\"rejectedByTableScore\":" + rejectedByTableScore.sum()
+                + ",\"rejectedByConstraints\":" + rejectedByConstraints.sum()
+                + ",\"rejectedAsDominated\":" + rejectedAsDominated.sum()
+                + ",\"ratings\":" + ratings.toJson()
+                + ",\"statistics\":" + ratingStatistics.toJson()
+                + '}';
+    }
+
+    @NotNull
+    public final String getSummary() {
+        long processed = plansProcessed.sum();
+        StringBuilder sb = new StringBuilder("Metrics:");
+        sb.append(String.format("%n\tplans generated = %d (%s/s), processed = %d",
+                plansGenerated.sum(), formatDouble(getPlansPerSecond(), 0), processed));
+        sb.append(String.format("%n\tduplicates skipped = %d (%s%%)", duplicatePlans.sum(), formatDouble(getDuplicateRate() * 100, 1)));
+        sb.append(String.format("%n\tseating = %sms, scoring = %sms (worker threads total)",
+                formatDouble(seatingNanos.sum() / 1e6, 1), formatDouble(scoringNanos.sum() / 1e6, 1)));
+        sb.append(String.format("%n\tqueue wait = %sms, reduction = %sms (consumer)",
+                formatDouble(queueWaitNanos.sum() / 1e6, 1), formatDouble(reductionNanos.sum() / 1e6, 1)));
+        sb.append(String.format("%n\tqueue depth: avg = %s, max = %d",
+                formatDouble(processed > 0 ? ((double) queueDepthTotal.sum()) / processed : 0, 1), maxQueueDepth.get()));
+        sb.append(String.format("%n\trejected: follow-ups = %d, table score = %d, constraints = %d, dominated = %d",
+                rejectedByFollowUps.sum(), rejectedByTableScore.sum(), rejectedByConstraints.sum(), rejectedAsDominated.sum()));
+        sb.append(String.format("%n\tratings:"));
+        // summary groups buckets by powers of 2, full resolution is in JSON
+        int bucketsPerRange = ratings.getNoOfBuckets() / Histogram.getNoOfRanges();
+        for (int range = 0; range < Histogram.getNoOfRanges(); range++) {
+            long count = 0;
+            for (int bucket = range * bucketsPerRange; bucket < (range + 1) * bucketsPerRange; bucket++) {
+                count += ratings.getCount(bucket);
+            }
+            if (count > 0) {
+                sb.append(String.format("%n\t\t%s - %s: %d",
+                        formatDouble(Histogram.getLowerBound(range * bucketsPerRange), 2),
+                        formatDouble(Histogram.getLowerBound((range + 1) * bucketsPerRange), 2), count));
+            }
+        }
+        sb.append(ratingStatistics.getSummary());
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        FlightRecorder.removePeriodicEvent(snapshotHook);
+        if (reporter != null) {
+            reporter.shutdownNow();
+            jsonWriter.println(toJson());
+            jsonWriter.close();
+        }
+    }
+
+    /**
+     * @param queueDepth number of plans waiting for the consumer
+     */
+    public Metrics(@NotNull IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+}
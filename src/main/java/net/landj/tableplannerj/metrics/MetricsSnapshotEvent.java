@@ -0,0 +1,44 @@
+package net.landj.tableplannerj.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Timespan;
+
+/**
+ * Periodic JFR event with totals from {@link Metrics}.
+ */
+@Name("net.landj.tableplanner.MetricsSnapshot")
+@Label("Metrics Snapshot")
+@Category("Table Planner")
+@Description("Totals of the running plan search")
+@Period("1 s")
+public final class MetricsSnapshotEvent extends Event {
+    @Label("Plans Generated")
+    public long plansGenerated;
+
+    @Label("Plans Processed")
+    public long plansProcessed;
+
+    @Label("Plans Per Second")
+    public double plansPerSecond;
+
+    @Label("Rejected By Follow-ups")
+    public long rejectedByFollowUps;
+
+    @Label("Rejected By Table Score")
+    public long rejectedByTableScore;
+
+    @Label("Rejected By Constraints")
+    public long rejectedByConstraints;
+
+    @Label("Queue Depth")
+    public long queueDepth;
+
+    @Label("Queue Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueWaitNanos;
+}
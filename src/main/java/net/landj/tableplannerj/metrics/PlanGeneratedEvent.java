@@ -0,0 +1,28 @@
+package net.landj.tableplannerj.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for each generated plan (only recorded when enabled in a recording).
+ */
+@Name("net.landj.tableplanner.PlanGenerated")
+@Label("Plan Generated")
+@Category("Table Planner")
+@Description("Plan seated and scored by a worker thread")
+public final class PlanGeneratedEvent extends Event {
+    @Label("Rating")
+    public double rating;
+
+    @Label("Seating Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long seatingNanos;
+
+    @Label("Scoring Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long scoringNanos;
+}
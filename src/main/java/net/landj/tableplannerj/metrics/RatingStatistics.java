@@ -0,0 +1,131 @@
+package net.landj.tableplannerj.metrics;
+
+import net.landj.tableplannerj.model.Objective;
+import net.landj.tableplannerj.model.TablePlan;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.landj.tableplannerj.TablePlannerJ.formatDouble;
+
+/**
+ * Distribution of plan rating and its components over a whole run, in fixed memory.<p/>
+ * Also records when the best rating improved (by number of plans seen), showing whether more iterations are worth it.
+ * Only plans without broken constraints count towards the best rating.
+ */
+public final class RatingStatistics {
+    private static final double[] QUANTILES = {0.01, 0.1, 0.5, 0.9, 0.99};
+
+    private final Histogram ratings = new Histogram();
+    private final Map<Objective, Histogram> histograms = new EnumMap<>(Objective.class);
+    private final List<Long> improvementSamples = new ArrayList<>();
+    private final List<Double> improvementRatings = new ArrayList<>();
+    private long samples;
+    private double bestRating = Double.MAX_VALUE;
+
+    /**
+     * Record a plan, called from the consumer thread only.
+     */
+    public final void record(@NotNull TablePlan plan) {
+        samples++;
+        double rating = plan.getRating();
+        ratings.record(rating);
+        for (Objective objective : Objective.values()) {
+            histograms.get(objective).record(objective.getValue(plan));
+        }
+        if (plan.getConstraintViolations() == 0 && rating < bestRating) {
+            bestRating = rating;
+            synchronized (improvementRatings) {
+                improvementSamples.add(samples);
+                improvementRatings.add(rating);
+            }
+        }
+    }
+
+    @NotNull
+    public final Histogram getRatings() {
+        return this.ratings;
+    }
+
+    @NotNull
+    public final Histogram getHistogram(@NotNull Objective objective) {
+        return histograms.get(objective);
+    }
+
+    /**
+     * @return number of plans seen when the best rating improved
+     */
+    public final long[] getImprovementSamples() {
+        synchronized (improvementRatings) {
+            return improvementSamples.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    /**
+     * @return best rating after each improvement
+     */
+    public final double[] getImprovementRatings() {
+        synchronized (improvementRatings) {
+            return improvementRatings.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+
+    @NotNull
+    public final String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        appendJson(sb, "rating", ratings);
+        for (Objective objective : Objective.values()) {
+            appendJson(sb, objective.name().toLowerCase(), histograms.get(objective));
+        }
+        sb.append("\"bestRatingProgress\":[");
+        long[] samples = getImprovementSamples();
+        double[] ratings = getImprovementRatings();
+        for (int i = 0; i < samples.length; i++) {
+            sb.append(i > 0 ? "," : "").append('[').append(samples[i]).append(',').append(ratings[i]).append(']');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void appendJson(StringBuilder sb, String name, Histogram histogram) {
+        sb.append('"').append(name).append("\":{\"min\":").append(histogram.getMin())
+                .append(",\"mean\":").append(histogram.getMean())
+                .append(",\"max\":").append(histogram.getMax());
+        for (double quantile : QUANTILES) {
+            sb.append(",\"p").append(formatDouble(quantile * 100, 0)).append("\":").append(histogram.getValueAtQuantile(quantile));
+        }
+        sb.append("},");
+    }
+
+    @NotNull
+    public final String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        appendSummary(sb, "RATING", ratings);
+        for (Objective objective : Objective.values()) {
+            appendSummary(sb, objective.name(), histograms.get(objective));
+        }
+        sb.append(String.format("%n\tbest rating progress (plans seen: rating):"));
+        long[] samples = getImprovementSamples();
+        double[] ratings = getImprovementRatings();
+        for (int i = 0; i < samples.length; i++) {
+            sb.append(String.format("%s %d: %s", i > 0 ? "," : "", samples[i], formatDouble(ratings[i], 2)));
+        }
+        return sb.toString();
+    }
+
+    private static void appendSummary(StringBuilder sb, String name, Histogram histogram) {
+        sb.append(String.format("%n\t%s: min = %s", name, formatDouble(histogram.getMin(), 2)));
+        for (double quantile : QUANTILES) {
+            sb.append(String.format(", p%s = %s", formatDouble(quantile * 100, 0), formatDouble(histogram.getValueAtQuantile(quantile), 2)));
+        }
+        sb.append(String.format(", max = %s, avg = %s", formatDouble(histogram.getMax(), 2), formatDouble(histogram.getMean(), 2)));
+    }
+
+    public RatingStatistics() {
+        for (Objective objective : Objective.values()) {
+            histograms.put(objective, new Histogram());
+        }
+    }
+}
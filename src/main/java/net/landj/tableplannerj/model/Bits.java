@@ -0,0 +1,55 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sets of guests (by index) as {@code long[]} words, so sets can be intersected and counted a word at a time.
+ */
+final class Bits {
+    private static final long[] EMPTY = new long[0];
+
+    @NotNull
+    static long[] empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Add an index to the set.
+     *
+     * @return the set, or a longer copy of it if the index didn't fit
+     */
+    @NotNull
+    static long[] set(@NotNull long[] words, int index) {
+        int word = index >>> 6;
+        if (word >= words.length) {
+            long[] longer = new long[word + 1];
+            System.arraycopy(words, 0, longer, 0, words.length);
+            words = longer;
+        }
+        words[word] |= 1L << index;
+        return words;
+    }
+
+    static int count(@NotNull long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return size of the intersection of the two sets
+     */
+    static int countCommon(@NotNull long[] words, @NotNull long[] other) {
+        int length = Math.min(words.length, other.length);
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            count += Long.bitCount(words[i] & other[i]);
+        }
+        return count;
+    }
+
+    private Bits() {
+    }
+}
@@ -5,29 +5,50 @@ import org.jetbrains.annotations.NotNull;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static java.lang.Math.pow;
-import static java.util.stream.Collectors.summarizingDouble;
-import static net.landj.tableplannerj.TablePlanner.BASE_GUEST_RATING;
 import static org.apache.commons.lang3.StringUtils.leftPad;
 
 public final class Guest {
     private final HashMap<Guest, List<Integer>> otherGuests;
     @NotNull
     private final ArrayList<Table> tables;
-    private Double score;
+    private final BitSet visitedTables;
+    private final BitSet forbiddenTables;
+    private final BitSet requiredTables;
+    private long meetingWeight; // sum of weights of guests met (see MeetingWeights)
+    private double excessWeight; // sum of weights of guests met more than MeetingWeights.MAX_MEETINGS times
     @NotNull
     private final String id;
+    private final int index;
+    private final int[] pastMeetings;
+    private final int[] attributes;
+    private long[][] metPlanes; // [k] guests met (including previous events) more than k times
 
     @NotNull
     public final ArrayList<Table> getTables() {
         return this.tables;
     }
 
+    /**
+     * Guest score, see {@link #calculateScore(Guest, Collection)} (0 for a guest who met nobody).<p/>
+     * Kept up to date as the guest meets others, so it is never calculated again.
+     */
     public final double getScore() {
-        if (this.score == null) {
-            this.score = calculateScore(this);
-        }
-        return score;
+        return getDiversity() > 0 ? (meetingWeight + excessWeight) / getDiversity() : 0;
+    }
+
+    /**
+     * @return sum of weights of meetings with other guests, including meetings at previous events (see {@link MeetingWeights}),
+     * without guests met more than {@link MeetingWeights#MAX_MEETINGS} times
+     */
+    final long getMeetingWeight() {
+        return this.meetingWeight;
+    }
+
+    /**
+     * @return sum of weights of guests met more than {@link MeetingWeights#MAX_MEETINGS} times (0 for most guests)
+     */
+    final double getExcessWeight() {
+        return this.excessWeight;
     }
 
     public final int getDiversity() {
@@ -52,30 +73,134 @@ public final class Guest {
     }
 
     public final void greet(@NotNull Guest other, int round) {
-        score = null;
         List<Integer> meetings = this.otherGuests.get(other);
+        int allMeetings = getPastMeetings(other);
         if (meetings != null) {
             meetings.add(round);
+            allMeetings += meetings.size();
+            if (MeetingWeights.isExact(allMeetings)) {
+                meetingWeight += MeetingWeights.increase(allMeetings - 1);
+            } else {
+                removeWeight(allMeetings - 1);
+                addWeight(allMeetings);
+            }
         } else {
             List<Integer> newList = new ArrayList<>();
             newList.add(round);
             this.otherGuests.put(other, newList);
+            allMeetings++;
+            addWeight(allMeetings);
+        }
+        if (other.index >= 0) {
+            addMeeting(allMeetings - 1, other.index);
         }
+    }
 
+    private void addWeight(int meetings) {
+        if (MeetingWeights.isExact(meetings)) {
+            meetingWeight += MeetingWeights.of(meetings);
+        } else {
+            excessWeight += MeetingWeights.weight(meetings);
+        }
+    }
+
+    private void removeWeight(int meetings) {
+        if (MeetingWeights.isExact(meetings)) {
+            meetingWeight -= MeetingWeights.of(meetings);
+        } else {
+            excessWeight -= MeetingWeights.weight(meetings);
+        }
+    }
+
+    private void addMeeting(int plane, int other) {
+        if (plane >= metPlanes.length) {
+            metPlanes = Arrays.copyOf(metPlanes, plane + 1);
+            metPlanes[plane] = Bits.empty();
+        }
+        metPlanes[plane] = Bits.set(metPlanes[plane], other);
     }
 
     public final void seatAt(@NotNull Table table) {
         this.tables.add(table);
+        this.visitedTables.set(table.getIndex());
     }
 
     public final boolean hasNotSatAt(@NotNull Table table) {
-        return !this.tables.contains(table);
+        return !this.visitedTables.get(table.getIndex());
+    }
+
+    /**
+     * Check whether the guest can sit at the table in the current round.<p/>
+     * Guest can't return to a table and can't sit at a table forbidden by {@link PairingConstraints}.
+     */
+    public final boolean canSitAt(@NotNull Table table) {
+        return !this.visitedTables.get(table.getIndex()) && !this.forbiddenTables.get(table.getIndex());
+    }
+
+    public final boolean isRequiredAt(@NotNull Table table) {
+        return this.requiredTables.get(table.getIndex());
+    }
+
+    public final boolean hasRequiredTables() {
+        return !this.requiredTables.isEmpty();
+    }
+
+    /**
+     * Reset table constraints at the start of a round.
+     *
+     * @param avoidTables tables the guest must never sit at
+     * @param visitTables tables the guest must sit at once
+     */
+    public final void startRound(@NotNull BitSet avoidTables, @NotNull BitSet visitTables) {
+        this.forbiddenTables.clear();
+        this.forbiddenTables.or(avoidTables);
+        this.requiredTables.clear();
+        this.requiredTables.or(visitTables);
+        this.requiredTables.andNot(visitedTables);
+    }
+
+    /**
+     * Don't allow the guest to sit at the table in the current round.
+     */
+    public final void forbid(@NotNull Table table) {
+        this.forbiddenTables.set(table.getIndex());
+    }
+
+    /**
+     * Prefer the table in the current round.
+     */
+    public final void require(@NotNull Table table) {
+        this.requiredTables.set(table.getIndex());
+    }
+
+    /**
+     * Lift table constraints for the current round (when they can't be satisfied).
+     */
+    public final void relax() {
+        this.forbiddenTables.clear();
+        this.requiredTables.clear();
     }
 
     public final int getMeetings(@NotNull Guest other) {
         return otherGuests.getOrDefault(other, Collections.emptyList()).size();
     }
 
+    /**
+     * Number of times this guest met the other guest at previous events.
+     *
+     * @see MeetingHistory
+     */
+    public final int getPastMeetings(@NotNull Guest other) {
+        return pastMeetings != null && other.index >= 0 ? pastMeetings[other.index] : 0;
+    }
+
+    /**
+     * @return whether the guest was given meetings at previous events ({@link PlanFactory} gives them only when some guests met before)
+     */
+    public final boolean hasPastMeetings() {
+        return pastMeetings != null;
+    }
+
     private String getPadStartId() {
         return leftPad(id, 2);
     }
@@ -116,28 +241,105 @@ public final class Guest {
         return this.id;
     }
 
+    /**
+     * Attribute value indexes ({@code -1} when the guest doesn't have the attribute).
+     *
+     * @see GuestAttributes
+     */
+    @NotNull
+    public final int[] getAttributes() {
+        return this.attributes;
+    }
+
+    /**
+     * Index of the guest in the plan
+     */
+    public final int getIndex() {
+        return this.index;
+    }
+
     public Guest(@NotNull String id) {
+        this(id, -1, null, new int[0]);
+    }
+
+    /**
+     * @param id           guest id
+     * @param index        index of the guest in the plan
+     * @param pastMeetings number of meetings with other guests (by index) at previous events
+     * @param attributes   attribute value indexes (see {@link GuestAttributes})
+     */
+    public Guest(@NotNull String id, int index, int[] pastMeetings, @NotNull int[] attributes) {
         this.id = id;
+        this.index = index;
+        this.pastMeetings = pastMeetings;
+        this.attributes = attributes;
         this.otherGuests = new HashMap<>();
         this.tables = new ArrayList<>();
+        this.visitedTables = new BitSet();
+        this.forbiddenTables = new BitSet();
+        this.requiredTables = new BitSet();
+        this.metPlanes = new long[0][];
+        if (pastMeetings != null) {
+            for (int other = 0; other < pastMeetings.length; other++) {
+                for (int plane = 0; plane < pastMeetings[other]; plane++) {
+                    addMeeting(plane, other);
+                }
+            }
+        }
     }
 
     public static double calculateScore(@NotNull Guest guest) {
-        return calculateScore(guest, guest.otherGuests.keySet());
+        return guest.getScore();
     }
 
     /**
      * Calculate guest score.<p/>
-     * average of meeting rating. Meeting rating gets higher as number of meetings between the same 2 guests goes up.
+     * average of meeting rating. Meeting rating gets higher as number of meetings between the same 2 guests goes up
+     * (including meetings at previous events).
      *
      * @param guest  guest
      * @param others list of other guests {@code guest} has meet
      * @return guest score
      */
     public static double calculateScore(@NotNull Guest guest, @NotNull Collection<Guest> others) {
-        return others.stream()
-                .collect(summarizingDouble(other -> pow(BASE_GUEST_RATING, other.getMeetings(guest))))
-                .getSum() / guest.getDiversity();
+        long sum = 0;
+        double excess = 0;
+        for (Guest other : others) {
+            int meetings = other.getMeetings(guest) + other.getPastMeetings(guest);
+            if (MeetingWeights.isExact(meetings)) {
+                sum += MeetingWeights.of(meetings);
+            } else {
+                excess += MeetingWeights.weight(meetings);
+            }
+        }
+        return (sum + excess) / guest.getDiversity();
+    }
+
+    /**
+     * Calculate guest score with guests given as a set of indexes (see {@link Table#getOccupants(int)}).<p/>
+     * Same as {@link #calculateScore(Guest, Collection)}, counted a word of 64 guests at a time:
+     * rating of a pair meeting {@code m} times is {@code 1 + (BASE - 1) * (1 + BASE + ... + BASE ^ (m - 1))},
+     * so the sum is the number of others plus the number of others in each met-plane {@code k} (met more than {@code k} times)
+     * weighted by {@code (BASE - 1) * BASE ^ k} (see {@link MeetingWeights#increase(int)}).
+     *
+     * @param guest  guest (with index)
+     * @param others indexes of other guests
+     * @return guest score
+     */
+    public static double calculateScore(@NotNull Guest guest, @NotNull long[] others) {
+        long sum = Bits.count(others);
+        double excess = 0;
+        for (int plane = 0; plane < guest.metPlanes.length; plane++) {
+            int common = Bits.countCommon(others, guest.metPlanes[plane]);
+            if (common > 0) {
+                if (MeetingWeights.isExact(plane + 1)) {
+                    sum += MeetingWeights.increase(plane) * common;
+                } else {
+                    excess += (MeetingWeights.weight(plane + 1) - MeetingWeights.weight(plane)) * common;
+                }
+            }
+        }
+        return (sum + excess) / guest.getDiversity();
     }
 
 }
@@ -0,0 +1,98 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Categorical attributes of guests (e.g. department or location).<p/>
+ * Attribute values are turned into indexes, so tables can keep simple count arrays of values.
+ * Missing values are {@code -1} and never count as shared.
+ */
+public final class GuestAttributes {
+    private final List<String> keys;
+    private final int[] noOfValues;
+    private final int[][] guestValues; // [guest][key]
+
+    @NotNull
+    public static GuestAttributes of(@NotNull List<Map<String, String>> guestProperties) {
+        List<String> keys = new ArrayList<>();
+        guestProperties.forEach(properties -> properties.keySet().stream()
+                .filter(key -> !keys.contains(key))
+                .forEach(keys::add));
+
+        int[] noOfValues = new int[keys.size()];
+        int[][] guestValues = new int[guestProperties.size()][keys.size()];
+        for (int key = 0; key < keys.size(); key++) {
+            Map<String, Integer> valueIndexes = new HashMap<>();
+            for (int guest = 0; guest < guestProperties.size(); guest++) {
+                String value = guestProperties.get(guest).get(keys.get(key));
+                guestValues[guest][key] = value == null ? -1 : valueIndexes.computeIfAbsent(value, v -> valueIndexes.size());
+            }
+            noOfValues[key] = valueIndexes.size();
+        }
+        return new GuestAttributes(keys, noOfValues, guestValues);
+    }
+
+    @NotNull
+    public static GuestAttributes none(int noOfGuests) {
+        return new GuestAttributes(new ArrayList<>(), new int[0], new int[noOfGuests][0]);
+    }
+
+    public final boolean isEmpty() {
+        return this.keys.isEmpty();
+    }
+
+    public final int getNoOfKeys() {
+        return this.keys.size();
+    }
+
+    @NotNull
+    public final List<String> getKeys() {
+        return this.keys;
+    }
+
+    /**
+     * @return number of distinct values of each attribute
+     */
+    @NotNull
+    public final int[] getNoOfValues() {
+        return this.noOfValues;
+    }
+
+    /**
+     * @return value index of each attribute for given guest ({@code -1} if missing)
+     */
+    @NotNull
+    public final int[] getValues(int guest) {
+        return this.guestValues[guest];
+    }
+
+    /**
+     * @return number of attributes 2 guests have the same value of
+     */
+    public final int countShared(int guest, int other) {
+        int shared = 0;
+        for (int key = 0; key < keys.size(); key++) {
+            if (guestValues[guest][key] >= 0 && guestValues[guest][key] == guestValues[other][key]) {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    @NotNull
+    public String toString() {
+        return "attributes=" + keys + ", values=" + Arrays.toString(noOfValues);
+    }
+
+    private GuestAttributes(List<String> keys, int[] noOfValues, int[][] guestValues) {
+        this.keys = keys;
+        this.noOfValues = noOfValues;
+        this.guestValues = guestValues;
+    }
+}
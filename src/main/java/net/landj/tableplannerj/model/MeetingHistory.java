@@ -0,0 +1,203 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Number of times each pair of people met at previous events.<p/>
+ * Stored in a file which is memory-mapped when loaded, so only the names are read upfront
+ * and meeting counts are read on demand:
+ * <pre>
+ * int    magic
+ * int    number of names (n)
+ * int    number of events recorded
+ * n x    name (unsigned short length, UTF-8 bytes)
+ * n * (n - 1) / 2 x unsigned byte meeting count (upper triangle, row by row)
+ * </pre>
+ * Meeting counts are capped at 255.
+ */
+public final class MeetingHistory {
+    private static final int MAGIC = 0x54504d48; // TPMH
+    private static final int MAX_COUNT = 0xff;
+
+    private final Path file;
+    private final List<String> names;
+    private final Map<String, Integer> indexes;
+    private final int noOfEvents;
+    private final ByteBuffer counts;
+
+    @NotNull
+    public static MeetingHistory load(@NotNull Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return new MeetingHistory(file, new ArrayList<>(), 0, ByteBuffer.allocate(0));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a meeting history file: " + file);
+            }
+            int noOfNames = buffer.getInt();
+            int noOfEvents = buffer.getInt();
+            List<String> names = new ArrayList<>(noOfNames);
+            for (int i = 0; i < noOfNames; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xffff];
+                buffer.get(name);
+                names.add(new String(name, StandardCharsets.UTF_8));
+            }
+            return new MeetingHistory(file, names, noOfEvents, buffer.slice());
+        }
+    }
+
+    public final int getNoOfEvents() {
+        return this.noOfEvents;
+    }
+
+    /**
+     * Number of times 2 people met before.
+     *
+     * @return number of meetings (0 if any of them is not known)
+     */
+    public final int getMeetings(@NotNull String name, @NotNull String other) {
+        Integer index = indexes.get(name);
+        Integer otherIndex = indexes.get(other);
+        if (index == null || otherIndex == null || index.equals(otherIndex)) {
+            return 0;
+        }
+        return counts.get(offset(index, otherIndex, names.size())) & 0xff;
+    }
+
+    /**
+     * Meeting counts between given names.
+     *
+     * @return matrix of meeting counts in the same order as {@code names}
+     */
+    @NotNull
+    public final int[][] getMeetings(@NotNull List<String> names) {
+        int[][] meetings = new int[names.size()][names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            for (int j = i + 1; j < names.size(); j++) {
+                meetings[i][j] = meetings[j][i] = getMeetings(names.get(i), names.get(j));
+            }
+        }
+        return meetings;
+    }
+
+    /**
+     * Add meetings from a finished plan (guests meet each other and the host at the same table) and save the file.
+     *
+     * @param tableNames hosts
+     * @param guestNames guests
+     * @param seating    table index for each guest (first dimension) and round (second dimension)
+     * @return updated history
+     */
+    @NotNull
+    public final MeetingHistory record(@NotNull List<String> tableNames,
+                                       @NotNull List<String> guestNames,
+                                       @NotNull int[][] seating) throws IOException {
+        List<String> newNames = new ArrayList<>(names);
+        Map<String, Integer> newIndexes = new HashMap<>(indexes);
+        int[] tableIndexes = addNames(tableNames, newNames, newIndexes);
+        int[] guestIndexes = addNames(guestNames, newNames, newIndexes);
+
+        int n = newNames.size();
+        byte[] newCounts = new byte[(int) pairs(n)];
+        for (int i = 0; i < names.size(); i++) {
+            for (int j = i + 1; j < names.size(); j++) {
+                newCounts[offset(i, j, n)] = counts.get(offset(i, j, names.size()));
+            }
+        }
+
+        for (int guest = 0; guest < seating.length; guest++) {
+            for (int round = 0; round < seating[guest].length; round++) {
+                increment(newCounts, guestIndexes[guest], tableIndexes[seating[guest][round]], n);
+                for (int other = guest + 1; other < seating.length; other++) {
+                    if (seating[other][round] == seating[guest][round]) {
+                        increment(newCounts, guestIndexes[guest], guestIndexes[other], n);
+                    }
+                }
+            }
+        }
+
+        write(newNames, noOfEvents + 1, newCounts);
+        return new MeetingHistory(file, newNames, noOfEvents + 1, ByteBuffer.wrap(newCounts));
+    }
+
+    private void write(List<String> newNames, int newNoOfEvents, byte[] newCounts) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(12);
+        header.putInt(MAGIC).putInt(newNames.size()).putInt(newNoOfEvents).flip();
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(header);
+            for (String name : newNames) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer entry = ByteBuffer.allocate(2 + bytes.length);
+                entry.putShort((short) bytes.length).put(bytes).flip();
+                channel.write(entry);
+            }
+            ByteBuffer body = ByteBuffer.wrap(newCounts);
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int[] addNames(List<String> toAdd, List<String> names, Map<String, Integer> indexes) {
+        int[] result = new int[toAdd.size()];
+        for (int i = 0; i < toAdd.size(); i++) {
+            String name = toAdd.get(i);
+            Integer index = indexes.get(name);
+            if (index == null) {
+                index = names.size();
+                names.add(name);
+                indexes.put(name, index);
+            }
+            result[i] = index;
+        }
+        return result;
+    }
+
+    private static void increment(byte[] counts, int i, int j, int n) {
+        if (i == j) {
+            return;
+        }
+        int offset = offset(i, j, n);
+        if ((counts[offset] & 0xff) < MAX_COUNT) {
+            counts[offset]++;
+        }
+    }
+
+    private static long pairs(int n) {
+        return (long) n * (n - 1) / 2;
+    }
+
+    private static int offset(int i, int j, int n) {
+        int row = Math.min(i, j);
+        int column = Math.max(i, j);
+        return (int) (pairs(n) - pairs(n - row) + column - row - 1);
+    }
+
+    private MeetingHistory(Path file, List<String> names, int noOfEvents, ByteBuffer counts) {
+        this.file = file;
+        this.names = names;
+        this.noOfEvents = noOfEvents;
+        this.counts = counts;
+        this.indexes = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            indexes.put(names.get(i), i);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.landj.tableplannerj.model;
+
+import static net.landj.tableplannerj.TablePlanner.BASE_GUEST_RATING;
+
+/**
+ * Precomputed integer weights of meetings, {@code BASE_GUEST_RATING ^ m} for a pair meeting {@code m} times.<p/>
+ * Weights of guests can be added up exactly (as long as the base is a whole number) and changed by a single add
+ * when 2 guests meet again. Whole numbers are kept up to {@link #MAX_MEETINGS}, so that sums over a million guests still fit a {@code long}.
+ * Pairs meeting more often (e.g. over a long history) are weighted by {@code Math.pow} as {@code double} values ({@link #weight(int)}),
+ * which callers keep apart from the whole numbers.
+ */
+final class MeetingWeights {
+    private static final int MAX_GUESTS = 1 << 20;
+    private static final long[] WEIGHTS;
+    static final int MAX_MEETINGS;
+
+    static {
+        if (BASE_GUEST_RATING != Math.rint(BASE_GUEST_RATING) || BASE_GUEST_RATING < 1) {
+            throw new IllegalStateException("Exact ratings need a whole number as BASE_GUEST_RATING: " + BASE_GUEST_RATING);
+        }
+        long base = (long) BASE_GUEST_RATING;
+        int noOfWeights = 1;
+        for (long weight = 1; noOfWeights < 64 && weight <= Long.MAX_VALUE / MAX_GUESTS / base; weight *= base) {
+            noOfWeights++;
+        }
+        WEIGHTS = new long[noOfWeights];
+        WEIGHTS[0] = 1;
+        for (int meetings = 1; meetings < noOfWeights; meetings++) {
+            WEIGHTS[meetings] = WEIGHTS[meetings - 1] * base;
+        }
+        MAX_MEETINGS = noOfWeights - 1;
+    }
+
+    /**
+     * @return whether the weight of a pair of guests meeting given number of times is a whole number (see {@link #of(int)})
+     */
+    static boolean isExact(int meetings) {
+        return meetings <= MAX_MEETINGS;
+    }
+
+    /**
+     * @param meetings number of meetings, no more than {@link #MAX_MEETINGS}
+     * @return weight of a pair of guests meeting given number of times
+     */
+    static long of(int meetings) {
+        return WEIGHTS[meetings];
+    }
+
+    /**
+     * @return weight of a pair of guests meeting given number of times as {@code double} (for any number of meetings)
+     */
+    static double weight(int meetings) {
+        return isExact(meetings) ? WEIGHTS[meetings] : Math.pow(BASE_GUEST_RATING, meetings);
+    }
+
+    /**
+     * @param meetings number of meetings before, less than {@link #MAX_MEETINGS}
+     * @return weight added when a pair of guests meets once more ({@code meetings} times before)
+     */
+    static long increase(int meetings) {
+        return of(meetings + 1) - of(meetings);
+    }
+
+    private MeetingWeights() {
+    }
+}
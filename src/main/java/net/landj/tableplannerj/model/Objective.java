@@ -0,0 +1,39 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Separate objectives multiplied into {@link TablePlan#getRating()}, all of them are minimised (ideal is 1).
+ */
+public enum Objective {
+    FOLLOW_UPS(TablePlan::getFollowUpsScore),
+    DIVERSITY(TablePlan::getDiversityScore),
+    GUEST_SCORE(plan -> plan.getGuestScores().getAvg()),
+    TABLE_SCORE(TablePlan::getTableScore),
+    ATTRIBUTE_MIX(TablePlan::getAttributeMixScore);
+
+    private final ToDoubleFunction<TablePlan> value;
+
+    public final double getValue(@NotNull TablePlan plan) {
+        return this.value.applyAsDouble(plan);
+    }
+
+    /**
+     * @return values of all objectives in declaration order
+     */
+    @NotNull
+    public static double[] getValues(@NotNull TablePlan plan) {
+        Objective[] objectives = values();
+        double[] values = new double[objectives.length];
+        for (int i = 0; i < objectives.length; i++) {
+            values[i] = objectives[i].getValue(plan);
+        }
+        return values;
+    }
+
+    Objective(ToDoubleFunction<TablePlan> value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,207 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Hard constraints between guests (or a guest and a host).<p/>
+ * Declared in the input file, one per line:
+ * <ul>
+ *     <li>{@code Alice != Bob} - Alice and Bob must never sit at the same table</li>
+ *     <li>{@code Alice == Bob} - Alice and Bob must sit at the same table at least once</li>
+ * </ul>
+ * When one of the names is a host, the constraint applies to the host's table.
+ */
+public final class PairingConstraints {
+    public static final String SEPARATE = "!=";
+    public static final String MEET = "==";
+
+    private final int[][] separate;
+    private final int[][] meet;
+    private final BitSet[] avoidTables;
+    private final BitSet[] visitTables;
+    private final boolean[] constrained;
+    private final boolean empty;
+
+    public static boolean isConstraint(@NotNull String line) {
+        return line.contains(SEPARATE) || line.contains(MEET);
+    }
+
+    /**
+     * Parse constraints.
+     *
+     * @param lines      constraint lines
+     * @param tableNames hosts
+     * @param guestNames guests
+     * @return constraints
+     */
+    @NotNull
+    public static PairingConstraints parse(@NotNull List<String> lines,
+                                           @NotNull List<String> tableNames,
+                                           @NotNull List<String> guestNames) {
+        List<List<Integer>> separate = newLists(guestNames.size());
+        List<List<Integer>> meet = newLists(guestNames.size());
+        BitSet[] avoidTables = newBitSets(guestNames.size());
+        BitSet[] visitTables = newBitSets(guestNames.size());
+
+        for (String line : lines) {
+            boolean isSeparate = line.contains(SEPARATE);
+            String[] names = line.split(isSeparate ? SEPARATE : MEET, 2);
+            if (names.length != 2) {
+                throw new IllegalArgumentException("Invalid constraint: " + line);
+            }
+            String name = names[0].trim();
+            String other = names[1].trim();
+            int guest = guestNames.indexOf(name);
+            int otherGuest = guestNames.indexOf(other);
+            if (guest < 0 && otherGuest < 0 || guest >= 0 && guest == otherGuest) {
+                throw new IllegalArgumentException("Constraint must be between 2 different guests or a guest and a host: " + line);
+            }
+
+            if (guest >= 0 && otherGuest >= 0) {
+                (isSeparate ? separate : meet).get(guest).add(otherGuest);
+                (isSeparate ? separate : meet).get(otherGuest).add(guest);
+            } else {
+                int table = tableNames.indexOf(guest < 0 ? name : other);
+                if (table < 0) {
+                    throw new IllegalArgumentException("Unknown name in constraint: " + line);
+                }
+                (isSeparate ? avoidTables : visitTables)[guest >= 0 ? guest : otherGuest].set(table);
+            }
+        }
+
+        return new PairingConstraints(toArrays(separate), toArrays(meet), avoidTables, visitTables);
+    }
+
+    @NotNull
+    public static PairingConstraints none(int noOfGuests) {
+        return new PairingConstraints(new int[noOfGuests][0], new int[noOfGuests][0], newBitSets(noOfGuests), newBitSets(noOfGuests));
+    }
+
+    public final boolean isEmpty() {
+        return this.empty;
+    }
+
+    public final boolean isConstrained(int guest) {
+        return this.constrained[guest];
+    }
+
+    /**
+     * @return guests (by index) who must not meet given guest
+     */
+    @NotNull
+    public final int[] getSeparateFrom(int guest) {
+        return this.separate[guest];
+    }
+
+    /**
+     * @return guests (by index) who must meet given guest
+     */
+    @NotNull
+    public final int[] getMustMeet(int guest) {
+        return this.meet[guest];
+    }
+
+    /**
+     * @return tables (by index) given guest must never sit at
+     */
+    @NotNull
+    public final BitSet getAvoidTables(int guest) {
+        return this.avoidTables[guest];
+    }
+
+    /**
+     * @return tables (by index) given guest must sit at once
+     */
+    @NotNull
+    public final BitSet getVisitTables(int guest) {
+        return this.visitTables[guest];
+    }
+
+    /**
+     * Count broken constraints in a finished plan.
+     *
+     * @param seating table index for each guest (first dimension) and round (second dimension)
+     * @return number of broken constraints (each pair counted once)
+     */
+    public final int countViolations(@NotNull int[][] seating) {
+        if (empty) {
+            return 0;
+        }
+        int violations = 0;
+        for (int guest = 0; guest < seating.length; guest++) {
+            for (int other : separate[guest]) {
+                if (other > guest && countMeetings(seating, guest, other) > 0) {
+                    violations++;
+                }
+            }
+            for (int other : meet[guest]) {
+                if (other > guest && countMeetings(seating, guest, other) == 0) {
+                    violations++;
+                }
+            }
+            for (int table : seating[guest]) {
+                if (avoidTables[guest].get(table)) {
+                    violations++;
+                }
+            }
+            for (int table = visitTables[guest].nextSetBit(0); table >= 0; table = visitTables[guest].nextSetBit(table + 1)) {
+                boolean visited = false;
+                for (int visitedTable : seating[guest]) {
+                    visited |= visitedTable == table;
+                }
+                if (!visited) {
+                    violations++;
+                }
+            }
+        }
+        return violations;
+    }
+
+    private static int countMeetings(int[][] seating, int guest, int other) {
+        int meetings = 0;
+        for (int round = 0; round < seating[guest].length; round++) {
+            if (seating[guest][round] == seating[other][round]) {
+                meetings++;
+            }
+        }
+        return meetings;
+    }
+
+    private static List<List<Integer>> newLists(int size) {
+        List<List<Integer>> lists = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            lists.add(new ArrayList<>());
+        }
+        return lists;
+    }
+
+    private static BitSet[] newBitSets(int size) {
+        BitSet[] bitSets = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            bitSets[i] = new BitSet();
+        }
+        return bitSets;
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        return lists.stream().map(list -> list.stream().distinct().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+    }
+
+    private PairingConstraints(int[][] separate, int[][] meet, BitSet[] avoidTables, BitSet[] visitTables) {
+        this.separate = separate;
+        this.meet = meet;
+        this.avoidTables = avoidTables;
+        this.visitTables = visitTables;
+        this.constrained = new boolean[separate.length];
+        boolean anyConstraint = false;
+        for (int i = 0; i < separate.length; i++) {
+            constrained[i] = separate[i].length > 0 || meet[i].length > 0 || !avoidTables[i].isEmpty() || !visitTables[i].isEmpty();
+            anyConstraint |= constrained[i];
+        }
+        this.empty = !anyConstraint;
+    }
+}
@@ -2,15 +2,22 @@ package net.landj.tableplannerj.model;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.stream.DoubleStream;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
 
 import static net.landj.tableplannerj.TablePlannerJ.formatDouble;
 
+/**
+ * Min, max, average and median of a parameter over guests of a plan.<p/>
+ * Calculated in a single pass over a reused buffer, the median is selected in place (no sorted copies).
+ */
 public final class ParameterStats {
+    private double[] values = new double[0];
     private double min;
     private double max;
     private double avg;
     private double med;
+    private double sum;
     private final ParameterStats.Parameter parameter;
 
     public final double getMin() {
@@ -29,12 +36,89 @@ public final class ParameterStats {
         return this.med;
     }
 
+    /**
+     * @return sum of the values (exact for whole numbers, e.g. counts)
+     */
+    public final double getSum() {
+        return this.sum;
+    }
+
     public final void calculate(@NotNull double[] values) {
-        double[] sorted = DoubleStream.of(values).sorted().toArray();
-        this.min = sorted.length > 0 ? sorted[0] : 0;
-        this.max = sorted.length > 0 ? sorted[sorted.length - 1] : Double.MAX_VALUE;
-        this.avg = DoubleStream.of(values).average().orElse(0);
-        this.med = sorted.length > 0 ? sorted[sorted.length / 2] : 0;
+        double[] buffer = buffer(values.length);
+        System.arraycopy(values, 0, buffer, 0, values.length);
+        calculate(values.length);
+    }
+
+    /**
+     * Calculate stats of a value of given items.
+     */
+    public final <T> void calculate(@NotNull List<T> items, @NotNull ToDoubleFunction<T> value) {
+        double[] buffer = buffer(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            buffer[i] = value.applyAsDouble(items.get(i));
+        }
+        calculate(items.size());
+    }
+
+    private double[] buffer(int size) {
+        if (values.length < size) {
+            values = new double[size];
+        }
+        return values;
+    }
+
+    private void calculate(int size) {
+        if (size == 0) {
+            this.min = 0;
+            this.max = Double.MAX_VALUE;
+            this.avg = 0;
+            this.med = 0;
+            this.sum = 0;
+            return;
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+            sum += values[i];
+        }
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.avg = sum / size;
+        this.med = select(values, size, size / 2);
+    }
+
+    /**
+     * Quickselect - k-th smallest of the first {@code size} values (reorders them).
+     */
+    private static double select(double[] values, int size, int k) {
+        int left = 0;
+        int right = size - 1;
+        while (left < right) {
+            double pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    double swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return values[k];
     }
 
     @NotNull
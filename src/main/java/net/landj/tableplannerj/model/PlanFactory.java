@@ -6,13 +6,30 @@ import net.landj.tableplannerj.allocators.NextTableAllocator;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public final class PlanFactory {
+    /**
+     * Capacity of a table without a stated capacity, among tables with capacity
+     */
+    public static final int UNSPECIFIED_CAPACITY = -1;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     private final int noOfSessions;
     private final List<String> tableNames;
     private final List<String> guestNames;
     private final NextTableAllocator nextTableAllocator;
+    private final int[][] pastMeetings;
+    private final PairingConstraints constraints;
+    private final int[] capacities;
+    private final GuestAttributes attributes;
+    private final PlanFingerprint fingerprint;
+    private final ForkJoinPool seatingPool;
 
     public final int getNoOfTables() {
         return this.tableNames.size();
@@ -28,10 +45,215 @@ public final class PlanFactory {
 
     @NotNull
     public final TablePlan newPlan() {
-        return new TablePlan(guestNames.stream().map(Guest::new).collect(Collectors.toList()),
-                tableNames.stream().map(Table::new).collect(Collectors.toList()),
+        return newPlan(ThreadLocalRandom.current());
+    }
+
+    /**
+     * New plan using given random numbers, the same sequence of random numbers gives the same plan.
+     */
+    @NotNull
+    public final TablePlan newPlan(@NotNull Random random) {
+        return seat(random, pastMeetings);
+    }
+
+    /**
+     * New plan seated with given meetings between guests at previous events instead of the history
+     * (e.g. earlier events of a series planned together).
+     *
+     * @param pastMeetings number of meetings for each pair of guests (by index), {@code null} for none
+     */
+    @NotNull
+    public final TablePlan newPlan(@NotNull Random random, int[][] pastMeetings) {
+        return seat(random, pastMeetings != null && anyMet(pastMeetings) ? pastMeetings : null);
+    }
+
+    /**
+     * @param pastMeetings meetings at previous events, {@code null} when no guests met before (guests then skip them altogether)
+     */
+    private TablePlan seat(Random random, int[][] pastMeetings) {
+        return new TablePlan(IntStream.range(0, guestNames.size())
+                .mapToObj(i -> new Guest(guestNames.get(i), i, pastMeetings != null ? pastMeetings[i] : null, attributes.getValues(i)))
+                .collect(Collectors.toList()),
+                IntStream.range(0, tableNames.size())
+                        .mapToObj(i -> new Table(tableNames.get(i), i, capacities[i], attributes.getNoOfValues()))
+                        .collect(Collectors.toList()),
                 noOfSessions,
-                nextTableAllocator);
+                nextTableAllocator,
+                constraints,
+                fingerprint,
+                random,
+                seatingPool);
+    }
+
+    /**
+     * Tables without a stated capacity get an even share of the guests left over by tables with capacity (at least 1 each),
+     * so they count as ordinary tables in the capacity-relative table score and load.
+     */
+    private static int[] resolveCapacities(int[] capacities, List<String> tableNames, int noOfGuests) {
+        if (capacities.length != tableNames.size()) {
+            throw new IllegalArgumentException("Capacity is expected for each of " + tableNames.size() + " tables");
+        }
+        long stated = 0;
+        int unspecified = 0;
+        for (int i = 0; i < capacities.length; i++) {
+            if (capacities[i] == UNSPECIFIED_CAPACITY) {
+                unspecified++;
+            } else if (capacities[i] <= 0) {
+                throw new IllegalArgumentException("Capacity of " + tableNames.get(i) + " must be positive: " + capacities[i]);
+            } else {
+                stated += capacities[i];
+            }
+        }
+        int share = unspecified > 0 ? (int) Math.max((noOfGuests - stated + unspecified - 1) / unspecified, 1) : 0;
+        return IntStream.of(capacities).map(capacity -> capacity == UNSPECIFIED_CAPACITY ? share : capacity).toArray();
+    }
+
+    /**
+     * Random numbers for an iteration of a search, derived from the seed and the iteration number (SplitMix64),
+     * so each iteration gives the same plan whenever and wherever it runs.
+     */
+    @NotNull
+    public static Random iterationRandom(long seed, int iteration) {
+        long value = seed + iteration * 0x9e3779b97f4a7c15L;
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return new Random(value ^ (value >>> 31));
+    }
+
+    /**
+     * Create a plan with a known seating.
+     *
+     * @param seating table index for each guest (first dimension) and round (second dimension)
+     * @return plan with calculated stats
+     * @see TablePlan#getSeating()
+     */
+    @NotNull
+    public final TablePlan rebuildPlan(@NotNull int[][] seating) {
+        TablePlan plan = newPlan();
+        plan.replay(seating);
+        return plan;
+    }
+
+    /**
+     * Hash of everything plans of the factory are seated and rated by (sessions, tables, guests, capacities, history,
+     * constraints and attributes), so plans kept from an earlier run (e.g. in a checkpoint) are only used with the same inputs.
+     */
+    public final long getInputsHash() {
+        long hash = mix(FNV_OFFSET, noOfSessions);
+        for (String name : tableNames) {
+            hash = mix(hash, name.hashCode());
+        }
+        for (String name : guestNames) {
+            hash = mix(hash, name.hashCode());
+        }
+        for (int capacity : capacities) {
+            hash = mix(hash, capacity);
+        }
+        if (pastMeetings != null) {
+            for (int[] meetings : pastMeetings) {
+                hash = mix(hash, meetings);
+            }
+        }
+        for (int guest = 0; guest < guestNames.size(); guest++) {
+            hash = mix(hash, constraints.getSeparateFrom(guest));
+            hash = mix(hash, constraints.getMustMeet(guest));
+            hash = mix(hash, constraints.getAvoidTables(guest).toLongArray());
+            hash = mix(hash, constraints.getVisitTables(guest).toLongArray());
+            hash = mix(hash, attributes.getValues(guest));
+        }
+        for (String key : attributes.getKeys()) {
+            hash = mix(hash, key.hashCode());
+        }
+        return mix(hash, attributes.getNoOfValues());
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    private static long mix(long hash, int[] values) {
+        hash = mix(hash, values.length);
+        for (int value : values) {
+            hash = mix(hash, value);
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long[] values) {
+        hash = mix(hash, values.length);
+        for (long value : values) {
+            hash = mix(hash, value);
+        }
+        return hash;
+    }
+
+    private static boolean anyMet(int[][] meetings) {
+        for (int[] guestMeetings : meetings) {
+            for (int met : guestMeetings) {
+                if (met > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Meetings between guests at previous events.
+     *
+     * @return number of meetings for each pair of guests (by index), {@code null} when no guests met before
+     * @see #hasPastMeetings()
+     */
+    public final int[][] getPastMeetings() {
+        return this.pastMeetings;
+    }
+
+    /**
+     * @return whether any guests met at previous events
+     */
+    public final boolean hasPastMeetings() {
+        return this.pastMeetings != null;
+    }
+
+    /**
+     * @return maximum number of guests at each table
+     */
+    @NotNull
+    public final int[] getCapacities() {
+        return this.capacities;
+    }
+
+    @NotNull
+    public final GuestAttributes getAttributes() {
+        return this.attributes;
+    }
+
+    @NotNull
+    public final PairingConstraints getConstraints() {
+        return this.constraints;
+    }
+
+    @NotNull
+    public final PlanFingerprint getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * @return pool seating each round of a plan in parallel ({@code null} when plans are seated by a single thread)
+     * @see Usher
+     */
+    public final ForkJoinPool getSeatingPool() {
+        return this.seatingPool;
+    }
+
+    @NotNull
+    public final List<String> getTableNames() {
+        return this.tableNames;
+    }
+
+    @NotNull
+    public final List<String> getGuestNames() {
+        return this.guestNames;
     }
 
     public final int getNoOfSessions() {
@@ -42,9 +264,60 @@ public final class PlanFactory {
                        List<String> tableNames,
                        List<String> guestNames,
                        NextTableAllocator nextTableAllocator) {
+        this(noOfSessions, tableNames, guestNames, nextTableAllocator, null, null, null, null);
+    }
+
+    public PlanFactory(int noOfSessions,
+                       List<String> tableNames,
+                       List<String> guestNames,
+                       NextTableAllocator nextTableAllocator,
+                       MeetingHistory history,
+                       PairingConstraints constraints,
+                       int[] capacities,
+                       GuestAttributes attributes) {
+        this(noOfSessions, tableNames, guestNames, nextTableAllocator, history, constraints, capacities, attributes, null);
+    }
+
+    /**
+     * @param capacities  maximum number of guests at each table ({@link #UNSPECIFIED_CAPACITY} for an even share of guests
+     *                    not seated at tables with capacity), {@code null} for no limit at any table
+     * @param seatingPool pool to seat each round of a plan in parallel (for very large events), {@code null} to seat guests one after another
+     */
+    public PlanFactory(int noOfSessions,
+                       List<String> tableNames,
+                       List<String> guestNames,
+                       NextTableAllocator nextTableAllocator,
+                       MeetingHistory history,
+                       PairingConstraints constraints,
+                       int[] capacities,
+                       GuestAttributes attributes,
+                       ForkJoinPool seatingPool) {
+        this.seatingPool = seatingPool;
+        this.attributes = attributes != null ? attributes : GuestAttributes.none(guestNames.size());
+        this.capacities = capacities != null
+                ? resolveCapacities(capacities, tableNames, guestNames.size())
+                // no limit
+                : IntStream.range(0, tableNames.size()).map(i -> guestNames.size()).toArray();
+        if (IntStream.of(this.capacities).sum() < guestNames.size()) {
+            throw new IllegalArgumentException("Tables don't have enough capacity for " + guestNames.size() + " guests");
+        }
+        this.constraints = constraints != null ? constraints : PairingConstraints.none(guestNames.size());
+        for (int i = 0; i < guestNames.size(); i++) {
+            if (tableNames.size() - this.constraints.getAvoidTables(i).cardinality() < noOfSessions) {
+                throw new IllegalArgumentException("Not enough tables for " + guestNames.get(i) + " to avoid some of the tables in every session");
+            }
+        }
+        int[][] pastMeetings = history != null ? history.getMeetings(guestNames) : null;
+        // no matrix of zeros when nobody met before (n x n for up to thousands of guests, walked by every plan)
+        this.pastMeetings = pastMeetings != null && anyMet(pastMeetings) ? pastMeetings : null;
         this.noOfSessions = noOfSessions;
         this.tableNames = tableNames;
         this.guestNames = guestNames;
+        // guests only differ by their history, constraints and attributes
+        boolean guestSymmetric = this.pastMeetings == null
+                && this.constraints.isEmpty()
+                && this.attributes.isEmpty();
+        this.fingerprint = new PlanFingerprint(guestNames.size(), tableNames.size(), noOfSessions, guestSymmetric);
         if (nextTableAllocator != null) {
             this.nextTableAllocator = nextTableAllocator;
         } else {
@@ -0,0 +1,337 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Seating plan in a compact binary file, memory-mapped when read so seats are read on demand:
+ * <pre>
+ * int    magic
+ * int    number of tables (t)
+ * int    number of guests (g)
+ * int    number of sessions (s)
+ * t x    table name (unsigned short length, UTF-8 bytes)
+ * g x    guest name (unsigned short length, UTF-8 bytes)
+ * g * s x unsigned byte table index (guest by guest, round by round)
+ * </pre>
+ * Converts to and from CSV without loss both ways - the layout of {@link TablePlan#outputToCsv(java.io.File)}
+ * with a table row first, so the order of tables and tables without guests are kept:
+ * <pre>
+ * Tables,&lt;table name&gt;,...
+ * Guests,Round 1,...
+ * &lt;guest name&gt;,&lt;table name&gt;,...
+ * </pre>
+ * Names containing commas, quotes or line breaks are quoted (quotes doubled).
+ * CSV files without the table row (the plan output) can be read too, tables are then numbered in order
+ * of their first appearance (round by round) and tables without guests are missing.
+ */
+public final class PlanFile {
+    private static final int MAGIC = 0x54505046; // TPPF
+    private static final int MAX_TABLES = 0x100;
+    private static final String CSV_TABLES = "Tables";
+    private static final String CSV_HEADER = "Guests";
+
+    private final List<String> tableNames;
+    private final List<String> guestNames;
+    private final int noOfSessions;
+    private final ByteBuffer seats;
+
+    /**
+     * Write a plan to a binary file.
+     *
+     * @param tableNames hosts
+     * @param guestNames guests
+     * @param seating    table index for each guest (first dimension) and round (second dimension)
+     */
+    @NotNull
+    public static PlanFile write(@NotNull Path file,
+                                 @NotNull List<String> tableNames,
+                                 @NotNull List<String> guestNames,
+                                 @NotNull int[][] seating) throws IOException {
+        PlanFile plan = of(tableNames, guestNames, seating);
+        plan.write(file);
+        return plan;
+    }
+
+    /**
+     * Plan kept in memory (e.g. before writing it).
+     */
+    @NotNull
+    public static PlanFile of(@NotNull List<String> tableNames,
+                              @NotNull List<String> guestNames,
+                              @NotNull int[][] seating) {
+        if (tableNames.size() > MAX_TABLES) {
+            throw new IllegalArgumentException("No more than " + MAX_TABLES + " tables can be stored");
+        }
+        int noOfSessions = seating.length > 0 ? seating[0].length : 0;
+        ByteBuffer seats = ByteBuffer.allocate(guestNames.size() * noOfSessions);
+        for (int[] guestSeating : seating) {
+            for (int table : guestSeating) {
+                seats.put((byte) table);
+            }
+        }
+        seats.flip();
+        return new PlanFile(tableNames, guestNames, noOfSessions, seats);
+    }
+
+    @NotNull
+    public static PlanFile read(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a plan file: " + file);
+            }
+            int noOfTables = buffer.getInt();
+            int noOfGuests = buffer.getInt();
+            int noOfSessions = buffer.getInt();
+            List<String> tableNames = readNames(buffer, noOfTables);
+            List<String> guestNames = readNames(buffer, noOfGuests);
+            ByteBuffer seats = buffer.slice();
+            if (seats.remaining() != noOfGuests * noOfSessions) {
+                throw new IllegalArgumentException("Plan file is truncated: " + file);
+            }
+            return new PlanFile(tableNames, guestNames, noOfSessions, seats);
+        }
+    }
+
+    /**
+     * Read a plan from CSV (table row, header, then a guest name and table names for each round on each line).
+     */
+    @NotNull
+    public static PlanFile readCsv(@NotNull Path file) throws IOException {
+        List<List<String>> rows = parseCsv(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        List<String> tableNames = new ArrayList<>();
+        Map<String, Integer> tableIndexes = new HashMap<>();
+        boolean tablesListed = !rows.isEmpty() && rows.get(0).get(0).equals(CSV_TABLES);
+        if (tablesListed) {
+            List<String> listed = rows.remove(0);
+            for (String name : listed.subList(1, listed.size())) {
+                if (tableIndexes.putIfAbsent(name, tableNames.size()) != null) {
+                    throw new IllegalArgumentException("Table " + name + " is listed twice in " + file);
+                }
+                tableNames.add(name);
+            }
+        }
+        if (rows.isEmpty() || !rows.get(0).get(0).equals(CSV_HEADER)) {
+            throw new IllegalArgumentException("Not a plan CSV file: " + file);
+        }
+        int noOfSessions = rows.remove(0).size() - 1;
+        List<String> guestNames = new ArrayList<>();
+        for (List<String> row : rows) {
+            if (row.size() != noOfSessions + 1) {
+                throw new IllegalArgumentException("Expected guest and " + noOfSessions + " tables: " + String.join(",", row));
+            }
+            guestNames.add(row.get(0));
+        }
+
+        // without the table row, tables are numbered round by round (everybody is seated in round 1)
+        int[][] seating = new int[rows.size()][noOfSessions];
+        for (int round = 0; round < noOfSessions; round++) {
+            for (int guest = 0; guest < rows.size(); guest++) {
+                String name = rows.get(guest).get(round + 1);
+                Integer table = tableIndexes.get(name);
+                if (table == null) {
+                    if (tablesListed) {
+                        throw new IllegalArgumentException("Table " + name + " of guest " + guestNames.get(guest) + " is not listed in " + file);
+                    }
+                    table = tableNames.size();
+                    tableIndexes.put(name, table);
+                    tableNames.add(name);
+                }
+                seating[guest][round] = table;
+            }
+        }
+        return of(tableNames, guestNames, seating);
+    }
+
+    /**
+     * Header of a plan CSV file (without the table row).
+     */
+    static void writeCsvHeader(@NotNull PrintWriter it, int noOfSessions) {
+        it.print(CSV_HEADER);
+        for (int i = 1; i <= noOfSessions; i++) {
+            it.printf(",Round %d", i);
+        }
+        it.println();
+    }
+
+    /**
+     * @return the value quoted (with quotes doubled) when it contains a comma, quote or line break, otherwise as it is
+     */
+    @NotNull
+    public static String toCsvField(@NotNull String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * @return rows of cells, quoted cells unquoted (quoted cells can contain commas and line breaks), empty lines skipped
+     */
+    private static List<List<String>> parseCsv(String content) {
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        boolean lineEmpty = true;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    cell.append(c);
+                } else if (i + 1 < content.length() && content.charAt(i + 1) == '"') {
+                    cell.append(c);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+                lineEmpty = false;
+            } else if (c == ',') {
+                row.add(cell.toString());
+                cell.setLength(0);
+                lineEmpty = false;
+            } else if (c == '\n' || c == '\r') {
+                if (!lineEmpty) {
+                    row.add(cell.toString());
+                    rows.add(row);
+                    row = new ArrayList<>();
+                }
+                cell.setLength(0);
+                lineEmpty = true;
+            } else {
+                cell.append(c);
+                lineEmpty = false;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Quote is not closed in plan CSV file");
+        }
+        if (!lineEmpty) {
+            row.add(cell.toString());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    public final void write(@NotNull Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        header.putInt(MAGIC).putInt(tableNames.size()).putInt(guestNames.size()).putInt(noOfSessions).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            writeFully(channel, encodeNames(tableNames));
+            writeFully(channel, encodeNames(guestNames));
+            writeFully(channel, seats.duplicate());
+        }
+    }
+
+    public final void writeCsv(@NotNull Path file) throws IOException {
+        try (PrintWriter it = new PrintWriter(Files.newBufferedWriter(file))) {
+            it.print(CSV_TABLES);
+            for (String name : tableNames) {
+                it.print(',');
+                it.print(toCsvField(name));
+            }
+            it.println();
+            writeCsvHeader(it, noOfSessions);
+            for (int guest = 0; guest < guestNames.size(); guest++) {
+                it.print(toCsvField(guestNames.get(guest)));
+                for (int round = 0; round < noOfSessions; round++) {
+                    it.print(',');
+                    it.print(toCsvField(tableNames.get(getTable(guest, round))));
+                }
+                it.println();
+            }
+        }
+    }
+
+    @NotNull
+    public final List<String> getTableNames() {
+        return this.tableNames;
+    }
+
+    @NotNull
+    public final List<String> getGuestNames() {
+        return this.guestNames;
+    }
+
+    public final int getNoOfSessions() {
+        return this.noOfSessions;
+    }
+
+    /**
+     * @param round 0-based round
+     * @return table index of the guest in given round
+     */
+    public final int getTable(int guest, int round) {
+        return seats.get(guest * noOfSessions + round) & 0xff;
+    }
+
+    /**
+     * @return table index for each guest (first dimension) and round (second dimension)
+     */
+    @NotNull
+    public final int[][] getSeating() {
+        int[][] seating = new int[guestNames.size()][noOfSessions];
+        for (int guest = 0; guest < seating.length; guest++) {
+            for (int round = 0; round < noOfSessions; round++) {
+                seating[guest][round] = getTable(guest, round);
+            }
+        }
+        return seating;
+    }
+
+    private static List<String> readNames(ByteBuffer buffer, int noOfNames) {
+        List<String> names = new ArrayList<>(noOfNames);
+        for (int i = 0; i < noOfNames; i++) {
+            byte[] name = new byte[buffer.getShort() & 0xffff];
+            buffer.get(name);
+            names.add(new String(name, StandardCharsets.UTF_8));
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    private static ByteBuffer encodeNames(List<String> names) {
+        List<byte[]> encoded = new ArrayList<>(names.size());
+        int size = 0;
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            size += 2 + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] bytes : encoded) {
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private PlanFile(List<String> tableNames, List<String> guestNames, int noOfSessions, ByteBuffer seats) {
+        this.tableNames = tableNames;
+        this.guestNames = guestNames;
+        this.noOfSessions = noOfSessions;
+        this.seats = seats;
+    }
+}
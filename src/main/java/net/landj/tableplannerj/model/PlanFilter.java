@@ -0,0 +1,84 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import static java.lang.Math.log;
+import static net.landj.tableplannerj.TablePlanner.BASE_GUEST_RATING;
+
+/**
+ * Rules deciding which plans are good enough to be used, shared by the command line and the library API.<p/>
+ * A perfect plan is always accepted and ends the search.
+ * Other plans are rejected with too many follow-ups or (when tables and sessions are aligned) with unevenly spread seating.
+ */
+public final class PlanFilter {
+    private final int maxFollowUps;
+    private final boolean ignoreTableScore;
+    private final double perfectRating;
+
+    /**
+     * @return whether the plan has exactly the perfect rating (see {@link TablePlan#getExactRating()})
+     */
+    public final boolean isPerfect(@NotNull TablePlan plan) {
+        return plan.getExactRating().isEqualTo((long) perfectRating);
+    }
+
+    /**
+     * Filter out plans where there are too many follow ups (over the threshold).
+     */
+    public final boolean hasTooManyFollowUps(@NotNull TablePlan plan) {
+        return plan.getFollowUps().getMax() > maxFollowUps;
+    }
+
+    /**
+     * Filter out plans without ideally spread seating (all hosts see the same amount of guests).
+     */
+    public final boolean hasUnevenTables(@NotNull TablePlan plan) {
+        return !ignoreTableScore && !plan.getExactRating().isTableScoreIdeal();
+    }
+
+    /**
+     * @return whether the plan passes all filters
+     */
+    public final boolean accepts(@NotNull TablePlan plan) {
+        return plan.getConstraintViolations() == 0
+                && (isPerfect(plan) || !hasTooManyFollowUps(plan) && !hasUnevenTables(plan));
+    }
+
+    public final int getMaxFollowUps() {
+        return this.maxFollowUps;
+    }
+
+    public final double getPerfectRating() {
+        return this.perfectRating;
+    }
+
+    /**
+     * How many times do we allow 2 guests to follow each other up to the following table.<p/>
+     * Depending on number of guests and tables, it might be necessary for 2 to follow each other up to the next table.
+     * If this is the case we don't the same 2 keep following each other up but to share the burden between other guests as well.
+     * @return maximum number of follow ups we allow to accept
+     */
+    private static int determineMaxFollowUps(int noOfGuests, int noOfTables) {
+        double logResult = log(noOfGuests) / log(noOfTables);
+        int logResultInt = (int) logResult;
+        return logResult - logResultInt > 0.0 ? logResultInt + 1 : logResultInt;
+    }
+
+    /**
+     * Determine perfect score to allow terminate iterations early.<p/>
+     * At the moment we know perfect score certainly for cases where the number of guests is up to the maximum where each guest can move around without seeing anyone twice.
+     * @return perfect plan score
+     */
+    private static double determinePerfectRating(PlanFactory planFactory) {
+        return planFactory.getNoOfGuests() == planFactory.getIdealSeatingThreshold()
+                ? BASE_GUEST_RATING // all other plan ranking parameters should be their ideal 1
+                : BASE_GUEST_RATING * 2; // all but table score should be at ideal 1. table score will be 2 as the number of guests is not the same at each table every round
+    }
+
+    public PlanFilter(@NotNull PlanFactory planFactory) {
+        this.maxFollowUps = determineMaxFollowUps(planFactory.getNoOfGuests(), planFactory.getNoOfTables());
+        // don't rely on table score if number or tables and sessions is not aligned (table score filter wasn't designed for that)
+        this.ignoreTableScore = planFactory.getNoOfTables() - planFactory.getNoOfSessions() >= 1;
+        this.perfectRating = determinePerfectRating(planFactory);
+    }
+}
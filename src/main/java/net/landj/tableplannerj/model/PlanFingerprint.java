@@ -0,0 +1,71 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist-style 64-bit fingerprint of a seating.<p/>
+ * Each (round, table) seat has a random key, a guest's row hash is the XOR of keys of their seats.
+ * Row hashes are mixed and added up, so the fingerprint doesn't depend on the order of guests.<br/>
+ * When guests are interchangeable (no history, constraints or attributes), plans differing only by a permutation of guests
+ * have the same meeting structure and rating, and get the same fingerprint.
+ * Otherwise each guest has a key of their own and only the same seating gives the same fingerprint.<br/>
+ * Keys come from a fixed seed, so fingerprints are stable between runs.
+ */
+public final class PlanFingerprint {
+    private static final long SEED = 0x5461626c65506c61L;
+
+    private final long[][] seatKeys; // [round][table]
+    private final long[] guestKeys;
+    private final boolean guestSymmetric;
+
+    /**
+     * @param seating table index for each guest (first dimension) and round (second dimension)
+     * @return fingerprint (never 0)
+     */
+    public final long of(@NotNull int[][] seating) {
+        long fingerprint = 0;
+        for (int guest = 0; guest < seating.length; guest++) {
+            long row = guestKeys[guest];
+            for (int round = 0; round < seating[guest].length; round++) {
+                row ^= seatKeys[round][seating[guest][round]];
+            }
+            fingerprint += mix(row);
+        }
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+
+    public final boolean isGuestSymmetric() {
+        return this.guestSymmetric;
+    }
+
+    /**
+     * SplitMix64 finalizer, so the sum of rows isn't linear in the keys.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * @param guestSymmetric whether guests are interchangeable
+     */
+    public PlanFingerprint(int noOfGuests, int noOfTables, int noOfSessions, boolean guestSymmetric) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        this.seatKeys = new long[noOfSessions][noOfTables];
+        for (long[] roundKeys : seatKeys) {
+            for (int table = 0; table < noOfTables; table++) {
+                roundKeys[table] = random.nextLong();
+            }
+        }
+        this.guestSymmetric = guestSymmetric;
+        this.guestKeys = new long[noOfGuests];
+        if (!guestSymmetric) {
+            for (int guest = 0; guest < noOfGuests; guest++) {
+                guestKeys[guest] = random.nextLong();
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+
+/**
+ * Exact rating of a plan, see {@link TablePlan#getRating()}.<p/>
+ * Every part of the rating is kept as whole numbers: follow-ups and guest scores as sums over guests, diversity as the spread
+ * of whole numbers, table score and attribute mix as numerators over their denominators. Parts are turned into {@code double}
+ * values for printing and quick comparisons, the exact value (a fraction of {@link BigInteger}s) is only worked out
+ * when 2 ratings are too close to be told apart by {@code double} values (e.g. checking for a perfect plan).
+ * Equal ratings are always equal, however they were calculated.<br/>
+ * Guests meeting more than {@link MeetingWeights#MAX_MEETINGS} times (e.g. over a long history) are weighted by {@code Math.pow},
+ * ratings of plans with such guests are only compared as {@code double} values.
+ */
+public final class Rating implements Comparable<Rating> {
+    /**
+     * Relative difference of {@code double} values surely caused by different exact values (calculation error is far smaller)
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    private final long noOfGuests;
+    private final long followUpsNumerator; // over number of guests
+    private final long diversitySpread;
+    private final long[] weightsByDiversity; // [diversity] sum of meeting weights of guests with the diversity
+    private final boolean exact;
+    private final long tableNumerator;
+    private final long tableDenominator;
+    private final long sharedAttributes;
+    private final long possiblySharedAttributes;
+    private final double followUpsScore;
+    private final double guestScore;
+    private final double tableScore;
+    private final double attributeMixScore;
+    private final double value;
+    private BigInteger numerator;
+    private BigInteger denominator;
+
+    public final double getValue() {
+        return this.value;
+    }
+
+    public final double getFollowUpsScore() {
+        return this.followUpsScore;
+    }
+
+    public final double getDiversityScore() {
+        return 1.0 + diversitySpread;
+    }
+
+    /**
+     * @return average guest score
+     */
+    public final double getGuestScore() {
+        return this.guestScore;
+    }
+
+    public final double getTableScore() {
+        return this.tableScore;
+    }
+
+    public final double getAttributeMixScore() {
+        return this.attributeMixScore;
+    }
+
+    /**
+     * @return whether the table score is exactly 1 (each table saw the number of guests proportional to its capacity)
+     */
+    public final boolean isTableScoreIdeal() {
+        return tableNumerator == 0;
+    }
+
+    /**
+     * @return whether the rating is exactly the whole number
+     */
+    public final boolean isEqualTo(long whole) {
+        if (!exact) {
+            return value == whole;
+        }
+        if (Math.abs(value - whole) > TOLERANCE * Math.max(Math.abs(value), Math.abs(whole))) {
+            return false;
+        }
+        return getNumerator().equals(getDenominator().multiply(BigInteger.valueOf(whole)));
+    }
+
+    @Override
+    public int compareTo(@NotNull Rating other) {
+        if (!exact || !other.exact) {
+            return Double.compare(value, other.value);
+        }
+        if (Math.abs(value - other.value) > TOLERANCE * Math.max(Math.abs(value), Math.abs(other.value))) {
+            return value < other.value ? -1 : 1;
+        }
+        return getNumerator().multiply(other.getDenominator()).compareTo(other.getNumerator().multiply(getDenominator()));
+    }
+
+    private BigInteger getNumerator() {
+        if (numerator == null) {
+            calculateExactValue();
+        }
+        return numerator;
+    }
+
+    private BigInteger getDenominator() {
+        if (denominator == null) {
+            calculateExactValue();
+        }
+        return denominator;
+    }
+
+    /**
+     * Product of the parts as a fraction (not reduced).
+     */
+    private void calculateExactValue() {
+        // guest scores over the least common multiple of diversities
+        BigInteger commonDiversity = BigInteger.ONE;
+        for (int diversity = 1; diversity < weightsByDiversity.length; diversity++) {
+            if (weightsByDiversity[diversity] > 0) {
+                BigInteger next = BigInteger.valueOf(diversity);
+                commonDiversity = commonDiversity.divide(commonDiversity.gcd(next)).multiply(next);
+            }
+        }
+        BigInteger guestScores = BigInteger.ZERO;
+        for (int diversity = 1; diversity < weightsByDiversity.length; diversity++) {
+            if (weightsByDiversity[diversity] > 0) {
+                guestScores = guestScores.add(BigInteger.valueOf(weightsByDiversity[diversity]).multiply(commonDiversity.divide(BigInteger.valueOf(diversity))));
+            }
+        }
+        BigInteger guests = BigInteger.valueOf(Math.max(noOfGuests, 1));
+        BigInteger numerator = BigInteger.valueOf(Math.max(followUpsNumerator, noOfGuests))
+                .multiply(BigInteger.valueOf(1 + diversitySpread))
+                .multiply(guestScores)
+                .multiply(BigInteger.valueOf(tableDenominator + tableNumerator));
+        BigInteger denominator = guests
+                .multiply(guests)
+                .multiply(commonDiversity)
+                .multiply(BigInteger.valueOf(tableDenominator));
+        if (possiblySharedAttributes > 0) {
+            numerator = numerator.multiply(BigInteger.valueOf(possiblySharedAttributes + sharedAttributes));
+            denominator = denominator.multiply(BigInteger.valueOf(possiblySharedAttributes));
+        }
+        this.numerator = numerator;
+        this.denominator = denominator;
+    }
+
+    @NotNull
+    public String toString() {
+        return Double.toString(value);
+    }
+
+    /**
+     * @param noOfGuests               number of guests
+     * @param followUpsMax             most follow-ups of a guest
+     * @param followUpsMed             median of follow-ups of guests
+     * @param followUpsSum             follow-ups of all guests
+     * @param diversitySpread          most minus fewest guests met by a guest
+     * @param weightsByDiversity       sums of meeting weights (see {@link MeetingWeights}) of guests, by number of guests they met
+     * @param excessGuestScores        guest scores of meetings over {@link MeetingWeights#MAX_MEETINGS} (0 for an exact rating)
+     * @param tableNumerator           numerator of table score without the ideal 1
+     * @param tableDenominator         denominator of table score
+     * @param sharedAttributes         attribute values shared at tables
+     * @param possiblySharedAttributes most attribute values that could be shared at tables
+     */
+    Rating(long noOfGuests,
+           long followUpsMax,
+           long followUpsMed,
+           long followUpsSum,
+           long diversitySpread,
+           long[] weightsByDiversity,
+           double excessGuestScores,
+           long tableNumerator,
+           long tableDenominator,
+           long sharedAttributes,
+           long possiblySharedAttributes) {
+        this.noOfGuests = noOfGuests;
+        this.followUpsNumerator = noOfGuests * (followUpsMax + followUpsMed) - followUpsSum;
+        this.diversitySpread = diversitySpread;
+        this.weightsByDiversity = weightsByDiversity;
+        this.exact = excessGuestScores == 0;
+        this.tableNumerator = tableNumerator;
+        this.tableDenominator = tableDenominator;
+        this.sharedAttributes = sharedAttributes;
+        this.possiblySharedAttributes = possiblySharedAttributes;
+
+        double guests = Math.max(noOfGuests, 1);
+        this.followUpsScore = Math.max(followUpsMax + (followUpsMed - followUpsSum / guests), 1.0);
+        double guestScores = excessGuestScores;
+        for (int diversity = 1; diversity < weightsByDiversity.length; diversity++) {
+            guestScores += (double) weightsByDiversity[diversity] / diversity;
+        }
+        this.guestScore = guestScores / guests;
+        this.tableScore = 1.0 + (double) tableNumerator / tableDenominator;
+        this.attributeMixScore = possiblySharedAttributes > 0 ? 1.0 + (double) sharedAttributes / possiblySharedAttributes : 1.0;
+        this.value = followUpsScore * getDiversityScore() * guestScore * tableScore * attributeMixScore;
+    }
+}
@@ -0,0 +1,161 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.lang.Math.pow;
+import static java.util.Comparator.comparingInt;
+import static net.landj.tableplannerj.TablePlanner.BASE_GUEST_RATING;
+
+/**
+ * Plans of a series of recurring events for the same guests, planned together.<p/>
+ * Each event is a regular {@link TablePlan} (rated on its own, with meetings at previous events in the history only).
+ * The series is rated by the cost of repeated meetings across all of its events: a pair of guests meeting {@code m} times
+ * (including previous events in the history) costs {@code 1 + BASE_GUEST_RATING + ... + BASE_GUEST_RATING ^ (m - 2)}
+ * for the repeats, so the cost is 0 when no pair meets twice and spreading repeats over more pairs is cheaper.
+ */
+public final class SeriesPlan {
+    /**
+     * Order of plans of an event, the better first - fewer broken constraints, then the exact rating (see {@link TablePlan#getExactRating()})
+     */
+    public static final Comparator<TablePlan> EVENT_ORDER = comparingInt(TablePlan::getConstraintViolations).thenComparing(TablePlan::getExactRating);
+
+    private final List<TablePlan> events;
+    private final int noOfPairs;
+    private final int pairsMet;
+    private final int maxMeetings;
+    private final double repeatCost;
+    private final int constraintViolations;
+
+    /**
+     * @return plans of the events in order
+     */
+    @NotNull
+    public final List<TablePlan> getEvents() {
+        return this.events;
+    }
+
+    /**
+     * @return number of pairs of guests meeting at least once in the series
+     */
+    public final int getPairsMet() {
+        return this.pairsMet;
+    }
+
+    public final int getNoOfPairs() {
+        return this.noOfPairs;
+    }
+
+    /**
+     * @return most meetings of a pair of guests in the series
+     */
+    public final int getMaxMeetings() {
+        return this.maxMeetings;
+    }
+
+    public final double getRepeatCost() {
+        return this.repeatCost;
+    }
+
+    public final int getConstraintViolations() {
+        return this.constraintViolations;
+    }
+
+    /**
+     * @return whether the series is better than the other one - fewer broken constraints, cheaper repeats,
+     * then better events by {@link #EVENT_ORDER} (the worst events compared first)
+     */
+    public final boolean isBetterThan(@NotNull SeriesPlan other) {
+        if (constraintViolations != other.constraintViolations) {
+            return constraintViolations < other.constraintViolations;
+        }
+        if (repeatCost != other.repeatCost) {
+            return repeatCost < other.repeatCost;
+        }
+        List<TablePlan> worstFirst = getWorstFirst();
+        List<TablePlan> otherWorstFirst = other.getWorstFirst();
+        for (int i = 0; i < Math.min(worstFirst.size(), otherWorstFirst.size()); i++) {
+            int order = EVENT_ORDER.compare(worstFirst.get(i), otherWorstFirst.get(i));
+            if (order != 0) {
+                return order < 0;
+            }
+        }
+        return false;
+    }
+
+    private List<TablePlan> getWorstFirst() {
+        List<TablePlan> worstFirst = new ArrayList<>(events);
+        worstFirst.sort(EVENT_ORDER.reversed());
+        return worstFirst;
+    }
+
+    /**
+     * Print the series and the penalty of each event against a single event planned on its own
+     * (spreading repeats over the series makes events rated worse than a standalone plan).
+     *
+     * @param standalone plan of a single event with the same guests and history
+     */
+    public final void print(@NotNull TablePlan standalone) {
+        System.out.printf("Series: events=%d, pairs met=%d of %d (%.1f%%), most meetings of a pair=%d, repeat cost=%.2f%n",
+                events.size(), pairsMet, noOfPairs, noOfPairs > 0 ? 100.0 * pairsMet / noOfPairs : 100.0, maxMeetings, repeatCost);
+        System.out.printf("Standalone event rating: %.2f%n", standalone.getRating());
+        for (int event = 0; event < events.size(); event++) {
+            TablePlan plan = events.get(event);
+            System.out.printf("Event %d: rating %.2f (%+.1f%% against standalone)%n",
+                    event + 1, plan.getRating(), 100.0 * (plan.getRating() - standalone.getRating()) / standalone.getRating());
+            plan.print();
+        }
+    }
+
+    /**
+     * @param planFactory factory of a single event
+     * @param seating     table index for each guest (first dimension) and round of all events (second dimension,
+     *                    sessions of the first event followed by sessions of the next one)
+     */
+    public SeriesPlan(@NotNull PlanFactory planFactory, @NotNull int[][] seating) {
+        int noOfGuests = planFactory.getNoOfGuests();
+        int noOfSessions = planFactory.getNoOfSessions();
+        int noOfEvents = noOfGuests > 0 ? seating[0].length / noOfSessions : 0;
+        List<TablePlan> events = new ArrayList<>(noOfEvents);
+        for (int event = 0; event < noOfEvents; event++) {
+            int[][] eventSeating = new int[noOfGuests][noOfSessions];
+            for (int guest = 0; guest < noOfGuests; guest++) {
+                System.arraycopy(seating[guest], event * noOfSessions, eventSeating[guest], 0, noOfSessions);
+            }
+            events.add(planFactory.rebuildPlan(eventSeating));
+        }
+        this.events = Collections.unmodifiableList(events);
+        this.constraintViolations = events.stream().mapToInt(TablePlan::getConstraintViolations).sum();
+
+        int[][] pastMeetings = planFactory.getPastMeetings();
+        int pairsMet = 0;
+        int maxMeetings = 0;
+        double repeatCost = 0;
+        for (int guest = 0; guest < noOfGuests; guest++) {
+            for (int other = guest + 1; other < noOfGuests; other++) {
+                int meetings = 0;
+                for (int round = 0; round < seating[guest].length; round++) {
+                    if (seating[guest][round] == seating[other][round]) {
+                        meetings++;
+                    }
+                }
+                if (meetings > 0) {
+                    pairsMet++;
+                }
+                maxMeetings = Math.max(maxMeetings, meetings);
+                int allMeetings = meetings + (pastMeetings != null ? pastMeetings[guest][other] : 0);
+                if (allMeetings > 1) {
+                    repeatCost += (pow(BASE_GUEST_RATING, allMeetings - 1) - 1) / (BASE_GUEST_RATING - 1);
+                }
+            }
+        }
+        this.noOfPairs = noOfGuests * (noOfGuests - 1) / 2;
+        this.pairsMet = pairsMet;
+        this.maxMeetings = maxMeetings;
+        this.repeatCost = repeatCost;
+    }
+}
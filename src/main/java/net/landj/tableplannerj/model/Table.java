@@ -3,23 +3,64 @@ package net.landj.tableplannerj.model;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-
-import static java.util.stream.Collectors.summarizingInt;
 
 public final class Table {
-    private final HashMap<Integer, ArrayList<Guest>> guestsAtTableByRound;
+    private final ArrayList<ArrayList<Guest>> guestsAtTableByRound;
+    private final ArrayList<int[][]> attributeCountsByRound; // [key][value] guests with the attribute value
+    private final ArrayList<long[]> occupantsByRound; // guest indexes as bits
+    private final int[] noOfAttributeValues;
     @NotNull
     private final String id;
+    private final int index;
+    private final int capacity;
+    private int totalGuestsAtTable;
+    private int sharedAttributes;
+    private int possiblySharedAttributes;
 
     public final int getTotalGuestsAtTable() {
-        return (int) guestsAtTableByRound.values().stream().collect(summarizingInt(ArrayList::size)).getSum();
+        return this.totalGuestsAtTable;
     }
 
     public final int getNoOfGuestsAtTable(int round) {
         return this.getGuestsAtTableInRound(round).size();
     }
 
+    /**
+     * Maximum number of guests (excluding the host) at the table in each round
+     */
+    public final int getCapacity() {
+        return this.capacity;
+    }
+
+    public final boolean hasSpaceIn(int round) {
+        return getNoOfGuestsAtTable(round) < capacity;
+    }
+
+    /**
+     * How full the table is in given round.
+     *
+     * @return number of guests relative to capacity
+     */
+    public final double getLoad(int round) {
+        return ((double) getNoOfGuestsAtTable(round)) / capacity;
+    }
+
+    /**
+     * Number of pairs of guests sharing an attribute value over all rounds (counted for each attribute).
+     *
+     * @see GuestAttributes
+     */
+    public final int getSharedAttributes() {
+        return this.sharedAttributes;
+    }
+
+    /**
+     * Number of pairs of guests over all rounds times number of attributes (maximum of {@link #getSharedAttributes()}).
+     */
+    public final int getPossiblySharedAttributes() {
+        return this.possiblySharedAttributes;
+    }
+
     public final void seatAGuest(@NotNull Guest guest, int round) {
         ArrayList<Guest> alreadyAtTable = getGuestsAtTableInRound(round);
 
@@ -28,7 +69,22 @@ public final class Table {
             guest.greet(alreadySeated, round);
         }
 
+        if (noOfAttributeValues.length > 0) {
+            int[][] attributeCounts = attributeCountsByRound.get(round);
+            int[] attributes = guest.getAttributes();
+            for (int key = 0; key < noOfAttributeValues.length; key++) {
+                if (attributes[key] >= 0) {
+                    sharedAttributes += attributeCounts[key][attributes[key]]++;
+                }
+            }
+            possiblySharedAttributes += alreadyAtTable.size() * noOfAttributeValues.length;
+        }
+
         alreadyAtTable.add(guest);
+        if (guest.getIndex() >= 0) {
+            occupantsByRound.set(round, Bits.set(occupantsByRound.get(round), guest.getIndex()));
+        }
+        totalGuestsAtTable++;
         guest.seatAt(this);
     }
 
@@ -39,7 +95,27 @@ public final class Table {
 
     @NotNull
     public final ArrayList<Guest> getGuestsAtTableInRound(int round) {
-        return guestsAtTableByRound.computeIfAbsent(round, key -> new ArrayList<>());
+        while (guestsAtTableByRound.size() <= round) {
+            guestsAtTableByRound.add(new ArrayList<>());
+            int[][] attributeCounts = new int[noOfAttributeValues.length][];
+            for (int key = 0; key < noOfAttributeValues.length; key++) {
+                attributeCounts[key] = new int[noOfAttributeValues[key]];
+            }
+            attributeCountsByRound.add(attributeCounts);
+            occupantsByRound.add(Bits.empty());
+        }
+        return guestsAtTableByRound.get(round);
+    }
+
+    /**
+     * Guests at the table in given round as a set of guest indexes ({@code long} words, bit {@code i % 64} of word {@code i / 64}).
+     *
+     * @see Guest#calculateScore(Guest, long[])
+     */
+    @NotNull
+    public final long[] getOccupants(int round) {
+        getGuestsAtTableInRound(round);
+        return occupantsByRound.get(round);
     }
 
     @NotNull
@@ -67,8 +143,26 @@ public final class Table {
         return this.id;
     }
 
-    public Table(@NotNull String id) {
+    /**
+     * Index of the table in the plan
+     */
+    public final int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * @param id                  table id (host)
+     * @param index               index of the table in the plan
+     * @param capacity            maximum number of guests in a round
+     * @param noOfAttributeValues number of distinct values of each guest attribute
+     */
+    public Table(@NotNull String id, int index, int capacity, @NotNull int[] noOfAttributeValues) {
         this.id = id;
-        this.guestsAtTableByRound = new HashMap<>();
+        this.index = index;
+        this.capacity = capacity;
+        this.noOfAttributeValues = noOfAttributeValues;
+        this.guestsAtTableByRound = new ArrayList<>();
+        this.attributeCountsByRound = new ArrayList<>();
+        this.occupantsByRound = new ArrayList<>();
     }
 }
\ No newline at end of file
@@ -7,9 +7,13 @@ import net.landj.tableplannerj.allocators.NextTableAllocator;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static java.lang.Math.abs;
 import static java.lang.Math.max;
@@ -23,19 +27,46 @@ public final class TablePlan implements Runnable {
     private final List<Guest> guests;
     private final List<Table> tables;
     private final int noOfSessions;
+    private final PairingConstraints constraints;
+    private final long totalCapacity;
+    private final PlanFingerprint fingerprint;
+    private int constraintViolations;
+    private Rating rating;
+    private long seatingNanos;
+    private long scoringNanos;
+
+    @NotNull
+    final List<Guest> getGuests() {
+        return Collections.unmodifiableList(this.guests);
+    }
+
+    @NotNull
+    final List<Table> getTables() {
+        return Collections.unmodifiableList(this.tables);
+    }
 
     @NotNull
     public final ParameterStats getFollowUps() {
         return this.followUps;
     }
 
+    @NotNull
+    public final ParameterStats getGuestScores() {
+        return this.guestScores;
+    }
+
+    @NotNull
+    public final ParameterStats getDiversities() {
+        return this.diversities;
+    }
+
     /**
      * Table score - based on number of guests at a table over all rounds<p/>
-     * Ideal score is 1 (each table saw the same number of guests).
+     * Ideal score is 1 (each table saw the number of guests proportional to its capacity).
      * @return table score
      */
     public final double getTableScore() {
-        return 1.0 + tables.stream().mapToDouble(table -> abs(((double) table.getTotalGuestsAtTable()) / noOfSessions - ((double) guests.size()) / tables.size())).sum();
+        return this.rating.getTableScore();
     }
 
     /**
@@ -44,7 +75,7 @@ public final class TablePlan implements Runnable {
      * @return follow up score
      */
     public final double getFollowUpsScore() {
-        return max(followUps.getMax() + (followUps.getMed() - followUps.getAvg()), 1.0);
+        return this.rating.getFollowUpsScore();
     }
 
     /**
@@ -54,53 +85,190 @@ public final class TablePlan implements Runnable {
      * @return number of other met by a guest
      */
     public final double getDiversityScore() {
-        return 1.0 + (this.diversities.getMax() - this.diversities.getMin());
+        return this.rating.getDiversityScore();
+    }
+
+    /**
+     * Attribute mix score - how many guests at the same table share an attribute value (e.g. department)<p/>
+     * Ideal score is 1 (nobody at a table shares any attribute value), it is 2 when everybody does.
+     * Always 1 when guests don't have attributes.
+     * @return attribute mix score
+     * @see GuestAttributes
+     */
+    public final double getAttributeMixScore() {
+        return this.rating.getAttributeMixScore();
     }
 
     /**
      * Get plan rating.<p/>
-     * Made up of {@link #getTableScore()}, {@link #getDiversityScore()}, average guest score and {@link #getTableScore()}<br/>
+     * Made up of {@link #getFollowUpsScore()}, {@link #getDiversityScore()}, average guest score, {@link #getTableScore()}
+     * and {@link #getAttributeMixScore()}<br/>
      * For ideal rating see
      * @return plan rating
+     * @see #getExactRating()
      */
     public final double getRating() {
-        return this.getFollowUpsScore() * this.getDiversityScore() * this.guestScores.getAvg() * this.getTableScore();
+        return this.rating.getValue();
+    }
+
+    /**
+     * Plan rating to compare plans exactly (e.g. with a perfect rating).
+     */
+    @NotNull
+    public final Rating getExactRating() {
+        return this.rating;
+    }
+
+    /**
+     * Number of broken {@link PairingConstraints} and guests seated over table capacity.<p/>
+     * Plans with broken constraints should not be used.
+     */
+    public final int getConstraintViolations() {
+        return this.constraintViolations;
+    }
+
+    /**
+     * Time spent seating guests in {@link #run()}
+     */
+    public final long getSeatingNanos() {
+        return this.seatingNanos;
+    }
+
+    /**
+     * Time spent calculating stats in {@link #run()}
+     */
+    public final long getScoringNanos() {
+        return this.scoringNanos;
     }
 
     public void run() {
+        this.seat();
+        this.score();
+    }
+
+    /**
+     * Seat guests in all rounds (first part of {@link #run()}).
+     */
+    public final void seat() {
+        long start = System.nanoTime();
         this.usher.firstRound();
         for(int i = 1; i < noOfSessions; i++) {
             this.usher.nextRound();
         }
+        this.seatingNanos = System.nanoTime() - start;
+    }
 
+    /**
+     * Calculate stats of seated guests (second part of {@link #run()}).
+     */
+    public final void score() {
+        long start = System.nanoTime();
         this.calculateStats();
+        this.scoringNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Seat guests according to given seating instead of allocating tables.
+     *
+     * @param seating table index for each guest (first dimension) and round (second dimension)
+     * @see #getSeating()
+     */
+    public final void replay(@NotNull int[][] seating) {
+        this.usher.seatAsPlanned(seating);
+        this.calculateStats();
+    }
+
+    /**
+     * Seating as table indexes.
+     *
+     * @return table index for each guest (first dimension) and round (second dimension)
+     */
+    @NotNull
+    public final int[][] getSeating() {
+        int[][] seating = new int[guests.size()][];
+        for (int i = 0; i < guests.size(); i++) {
+            seating[i] = guests.get(i).getTables().stream().mapToInt(Table::getIndex).toArray();
+        }
+        return seating;
+    }
+
+    /**
+     * Canonical fingerprint of the seating, see {@link PlanFingerprint}.
+     */
+    public final long getFingerprint() {
+        return this.fingerprint.of(getSeating());
     }
 
     private void calculateStats() {
-        guestScores.calculate(guests.stream().mapToDouble(Guest::getScore).toArray());
-        diversities.calculate(guests.stream().mapToDouble(Guest::getDiversity).toArray());
-        followUps.calculate(guests.stream().mapToDouble(Guest::getFollowUps).toArray());
+        guestScores.calculate(guests, Guest::getScore);
+        diversities.calculate(guests, Guest::getDiversity);
+        followUps.calculate(guests, Guest::getFollowUps);
+        this.rating = calculateRating();
+        constraintViolations = constraints.isEmpty() ? 0 : constraints.countViolations(getSeating());
+        for (Table table : tables) {
+            for (int round = 1; round <= noOfSessions; round++) {
+                constraintViolations += max(table.getNoOfGuestsAtTable(round) - table.getCapacity(), 0);
+            }
+        }
+    }
+
+    /**
+     * Parts of the rating as whole numbers (see {@link Rating}).
+     */
+    private Rating calculateRating() {
+        long[] weightsByDiversity = new long[guests.size()];
+        double excessGuestScores = 0;
+        for (Guest guest : guests) {
+            weightsByDiversity[guest.getDiversity()] += guest.getMeetingWeight();
+            if (guest.getExcessWeight() > 0) {
+                excessGuestScores += guest.getExcessWeight() / guest.getDiversity();
+            }
+        }
+        // |guests at table / sessions - guests * capacity / total capacity| over a common denominator
+        long tableNumerator = 0;
+        long sharedAttributes = 0;
+        long possiblySharedAttributes = 0;
+        for (Table table : tables) {
+            tableNumerator += abs(table.getTotalGuestsAtTable() * totalCapacity - (long) guests.size() * table.getCapacity() * noOfSessions);
+            sharedAttributes += table.getSharedAttributes();
+            possiblySharedAttributes += table.getPossiblySharedAttributes();
+        }
+        return new Rating(guests.size(),
+                (long) followUps.getMax(),
+                (long) followUps.getMed(),
+                (long) followUps.getSum(),
+                (long) (diversities.getMax() - diversities.getMin()),
+                weightsByDiversity,
+                excessGuestScores,
+                tableNumerator,
+                noOfSessions * totalCapacity,
+                sharedAttributes,
+                possiblySharedAttributes);
     }
 
     public final void print() {
-        System.out.printf("Rating: %.2f (%.2f * %.2f * %.2f * %.2f%n", getRating(), getFollowUpsScore(), getDiversityScore(), guestScores.getAvg(), getTableScore());
+        if (tables.stream().anyMatch(table -> table.getPossiblySharedAttributes() > 0)) {
+            System.out.printf("Rating: %.2f (%.2f * %.2f * %.2f * %.2f * %.2f%n", getRating(), getFollowUpsScore(), getDiversityScore(), guestScores.getAvg(), getTableScore(), getAttributeMixScore());
+        } else {
+            System.out.printf("Rating: %.2f (%.2f * %.2f * %.2f * %.2f%n", getRating(), getFollowUpsScore(), getDiversityScore(), guestScores.getAvg(), getTableScore());
+        }
+        if (constraintViolations > 0) {
+            System.out.printf("Broken constraints: %d%n", constraintViolations);
+        }
         this.usher.printSeating();
         this.printStats();
     }
 
-    public final void outputToCsv(@NotNull File file) throws FileNotFoundException {
-        try (PrintWriter it = new PrintWriter(file)) {
+    public final void outputToCsv(@NotNull File file) throws IOException {
+        try (PrintWriter it = new PrintWriter(file, StandardCharsets.UTF_8)) {
             // header
-            it.print("Guests");
-            for (int i = 1; i <= noOfSessions; i++) {
-                it.printf(",Round %d", i);
-            }
-            it.println();
+            PlanFile.writeCsvHeader(it, noOfSessions);
             // guests
             for (Guest guest : guests) {
-                it.print(guest.getId());
+                it.print(PlanFile.toCsvField(guest.getId()));
                 for (Table table : guest.getTables()) {
-                    it.printf(",%s", table.getId());
+                    it.print(',');
+                    it.print(PlanFile.toCsvField(table.getId()));
                 }
                 it.println();
             }
@@ -113,13 +281,23 @@ public final class TablePlan implements Runnable {
         System.out.println(followUps);
     }
 
-    public TablePlan(List<Guest> guests, List<Table> tables, int noOfSessions, NextTableAllocator nextTableAllocator) {
+    public TablePlan(List<Guest> guests,
+                     List<Table> tables,
+                     int noOfSessions,
+                     NextTableAllocator nextTableAllocator,
+                     PairingConstraints constraints,
+                     PlanFingerprint fingerprint,
+                     Random random,
+                     ForkJoinPool seatingPool) {
         this.guests = guests;
         this.tables = tables;
         this.noOfSessions = noOfSessions;
+        this.constraints = constraints;
+        this.fingerprint = fingerprint;
+        this.totalCapacity = tables.stream().mapToLong(Table::getCapacity).sum();
         this.guestScores = new ParameterStats(ParameterStats.Parameter.SCORE);
         this.followUps = new ParameterStats(ParameterStats.Parameter.FOLLOW_UPS);
         this.diversities = new ParameterStats(ParameterStats.Parameter.DIVERSITY);
-        this.usher = new Usher(this.guests, this.tables, nextTableAllocator);
+        this.usher = new Usher(this.guests, this.tables, nextTableAllocator, constraints, random, seatingPool);
     }
 }
@@ -4,33 +4,311 @@ import net.landj.tableplannerj.allocators.NextTableAllocator;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Comparator.comparingDouble;
+import static java.util.Comparator.comparingInt;
 
 import static org.apache.commons.lang3.StringUtils.leftPad;
 
+/**
+ * Seats guests round by round.<p/>
+ * Guests are seated one after another, each table picked by the {@link NextTableAllocator} knowing where everybody before sits.<br/>
+ * With a seating pool (and no {@link PairingConstraints}), a round is seated in parallel instead, for very large events.
+ * Guests are taken in waves: tables for guests of a wave are proposed in parallel against the seating of previous waves,
+ * then a short sequential repair pass moves guests whose proposed table is visited before, full or over its share of the round
+ * (guests of a wave don't see each other's proposals) to the least loaded table they can sit at.
+ * Guests only meet others at their own table, so a task for each table seats its guests.
+ * Random numbers of each proposal come from the plan's random numbers, so a plan doesn't depend on thread timing.
+ */
 public final class Usher {
+    private static final int WAVES = 16;
+    private static final int MIN_WAVE_SIZE = 64;
+
     private int round;
     private final List<Guest> guests;
     private final List<Table> tables;
     private final NextTableAllocator nextTableAllocator;
+    private final PairingConstraints constraints;
+    private final List<Guest> seatingOrder;
+    private final boolean limitedCapacity;
+    private final Random random;
+    private final ForkJoinPool seatingPool;
 
     public final void firstRound() {
         this.round = 1;
-        for(int i = 0; i < guests.size(); i++) {
-            this.tables.get(i % this.tables.size()).seatAGuest(this.guests.get(i), this.round);
+        List<Guest> order = seatingOrder;
+        if (guests.stream().anyMatch(Guest::hasPastMeetings)) {
+            // don't seat the same people together in the first round at every event
+            order = new ArrayList<>(seatingOrder);
+            Collections.shuffle(order, random);
+        }
+        startRound();
+        if (isParallel()) {
+            firstRoundInParallel(order);
+            return;
+        }
+        int dealt = 0;
+        for (Guest guest : order) {
+            // round robin, skipping full tables
+            Table table = null;
+            for (int i = 0; i < this.tables.size() && table == null; i++) {
+                Table candidate = this.tables.get(dealt++ % this.tables.size());
+                if (candidate.hasSpaceIn(this.round)) {
+                    table = candidate;
+                }
+            }
+            if (table == null) {
+                // over capacity, the plan will be rejected
+                table = leastLoaded(this.tables);
+            }
+            if (!constraints.isEmpty()) {
+                table = firstTable(guest, table);
+            }
+            seat(guest, table);
         }
 
     }
 
     public final void nextRound() {
         this.round++;
-        List<Guest> remaining = new ArrayList<>(guests);
+        startRound();
+        if (isParallel()) {
+            nextRoundInParallel();
+            return;
+        }
+        List<Guest> remaining = new ArrayList<>(seatingOrder);
 
         while (!remaining.isEmpty()) {
             Guest guest = remaining.remove(0);
 
-            nextTableAllocator.nextTable(guest, tables, round).seatAGuest(guest, round);
+            List<Table> available = constraints.isEmpty() && !limitedCapacity ? tables : availableTables(guest);
+            if (available.isEmpty()) {
+                // dead end - seat anyway, the plan will be rejected for breaking constraints
+                guest.relax();
+                available = availableTables(guest);
+                if (available.isEmpty()) {
+                    seat(guest, leastLoaded(tables.stream().filter(guest::hasNotSatAt).collect(Collectors.toList())));
+                    continue;
+                }
+            }
+            seat(guest, nextTableAllocator.nextTable(guest, available, round, random));
+        }
+    }
+
+    private boolean isParallel() {
+        return seatingPool != null && constraints.isEmpty();
+    }
+
+    /**
+     * Round robin, skipping full tables (as {@link #firstRound()}), guests are seated by a task for each table.
+     */
+    private void firstRoundInParallel(List<Guest> order) {
+        int[] counts = new int[tables.size()];
+        int[] assigned = new int[order.size()];
+        int dealt = 0;
+        for (int i = 0; i < order.size(); i++) {
+            int table = -1;
+            for (int j = 0; j < tables.size() && table < 0; j++) {
+                int candidate = dealt++ % tables.size();
+                if (counts[candidate] < tables.get(candidate).getCapacity()) {
+                    table = candidate;
+                }
+            }
+            if (table < 0) {
+                // over capacity, the plan will be rejected
+                table = leastLoaded(order.get(i), counts, false);
+            }
+            counts[table]++;
+            assigned[i] = table;
+        }
+        seatInParallel(order, assigned);
+    }
+
+    private void nextRoundInParallel() {
+        for (Table table : tables) {
+            // rounds are added lazily, not while tasks read them
+            table.getGuestsAtTableInRound(round);
+        }
+        int[] counts = new int[tables.size()];
+        int[] capacities = tables.stream().mapToInt(Table::getCapacity).toArray();
+        int[] quotas = shares(seatingOrder.size(), new int[tables.size()], capacities);
+        // different waves each round, guests of a wave are more likely to pick the same tables
+        List<Guest> order = new ArrayList<>(seatingOrder);
+        Collections.shuffle(order, random);
+        int waveSize = Math.max(MIN_WAVE_SIZE, (order.size() + WAVES - 1) / WAVES);
+        for (int start = 0; start < order.size(); start += waveSize) {
+            List<Guest> wave = order.subList(start, Math.min(start + waveSize, order.size()));
+            long waveSeed = random.nextLong();
+            Table[] proposals = new Table[wave.size()];
+            seatingPool.submit(() -> IntStream.range(0, wave.size()).parallel().forEach(i -> {
+                Guest guest = wave.get(i);
+                List<Table> available = limitedCapacity ? availableTables(guest) : tables;
+                if (available.stream().anyMatch(guest::canSitAt)) {
+                    proposals[i] = nextTableAllocator.nextTable(guest, available, round, PlanFactory.iterationRandom(waveSeed, i));
+                }
+            })).join();
+
+            // guests of a wave don't see each other, so they'd all pick the same tables without a share of the wave for each table
+            int[] waveLimits = shares(wave.size(), counts, quotas);
+            int[] assigned = new int[wave.size()];
+            for (int i = 0; i < wave.size(); i++) {
+                Guest guest = wave.get(i);
+                Table proposal = proposals[i];
+                int table = proposal != null && guest.canSitAt(proposal) && counts[proposal.getIndex()] < waveLimits[proposal.getIndex()]
+                        ? proposal.getIndex()
+                        : repair(guest, counts, waveLimits, quotas, capacities);
+                counts[table]++;
+                assigned[i] = table;
+            }
+            seatInParallel(wave, assigned);
+        }
+    }
+
+    /**
+     * Share of given number of guests for each table on top of guests already seated - proportional to capacity, never over the limit.
+     */
+    private int[] shares(int noOfGuests, int[] counts, int[] limits) {
+        long totalCapacity = tables.stream().mapToLong(Table::getCapacity).sum();
+        int[] shares = new int[tables.size()];
+        for (int i = 0; i < tables.size(); i++) {
+            long share = (noOfGuests * (long) tables.get(i).getCapacity() + totalCapacity - 1) / totalCapacity;
+            shares[i] = (int) Math.min(limits[i], counts[i] + share);
+        }
+        return shares;
+    }
+
+    /**
+     * Least loaded table the guest can sit at within the first limits possible,
+     * or any table the guest hasn't sat at (dead end, the plan will be rejected).
+     */
+    private int repair(Guest guest, int[] counts, int[]... limits) {
+        for (int[] limit : limits) {
+            List<Integer> candidates = new ArrayList<>();
+            for (int i = 0; i < tables.size(); i++) {
+                if (guest.canSitAt(tables.get(i)) && counts[i] < limit[i]) {
+                    candidates.add(i);
+                }
+            }
+            if (!candidates.isEmpty()) {
+                double minLoad = candidates.stream().mapToDouble(i -> load(i, counts)).min().orElse(0);
+                List<Integer> least = candidates.stream().filter(i -> load(i, counts) == minLoad).collect(Collectors.toList());
+                return least.get(random.nextInt(least.size()));
+            }
+        }
+        return leastLoaded(guest, counts, true);
+    }
+
+    /**
+     * @param notVisited only tables the guest hasn't sat at
+     * @return least loaded table (first one if there is none)
+     */
+    private int leastLoaded(Guest guest, int[] counts, boolean notVisited) {
+        int best = -1;
+        for (int i = 0; i < tables.size(); i++) {
+            if ((!notVisited || guest.hasNotSatAt(tables.get(i))) && (best < 0 || load(i, counts) < load(best, counts))) {
+                best = i;
+            }
+        }
+        return Math.max(best, 0);
+    }
+
+    private double load(int table, int[] counts) {
+        return ((double) counts[table]) / tables.get(table).getCapacity();
+    }
+
+    /**
+     * Seat guests at given tables, a task for each table.
+     *
+     * @param assigned table index for each guest
+     */
+    private void seatInParallel(List<Guest> guests, int[] assigned) {
+        List<List<Guest>> byTable = new ArrayList<>(tables.size());
+        for (int i = 0; i < tables.size(); i++) {
+            byTable.add(new ArrayList<>());
+        }
+        for (int i = 0; i < guests.size(); i++) {
+            byTable.get(assigned[i]).add(guests.get(i));
+        }
+        seatingPool.submit(() -> IntStream.range(0, tables.size()).parallel().forEach(i -> {
+            Table table = tables.get(i);
+            for (Guest guest : byTable.get(i)) {
+                table.seatAGuest(guest, round);
+            }
+        })).join();
+    }
+
+    /**
+     * Round robin table unless constraints don't allow it. Then the least loaded table.
+     */
+    private Table firstTable(Guest guest, Table roundRobin) {
+        List<Table> available = availableTables(guest);
+        if (available.isEmpty() || available.contains(roundRobin)) {
+            return roundRobin;
+        }
+        return leastLoaded(available);
+    }
+
+    private Table leastLoaded(List<Table> candidates) {
+        return candidates.stream().min(comparingDouble(table -> table.getLoad(round))).orElse(tables.get(0));
+    }
+
+    /**
+     * Tables guest can sit at in the current round (with a free seat).
+     * Only required tables (to meet someone) if there are any.
+     */
+    private List<Table> availableTables(Guest guest) {
+        List<Table> available = tables.stream()
+                .filter(table -> guest.canSitAt(table) && table.hasSpaceIn(round))
+                .collect(Collectors.toList());
+        if (guest.hasRequiredTables()) {
+            List<Table> required = available.stream().filter(guest::isRequiredAt).collect(Collectors.toList());
+            if (!required.isEmpty()) {
+                return required;
+            }
+        }
+        return available;
+    }
+
+    private void startRound() {
+        if (!constraints.isEmpty()) {
+            for (Guest guest : guests) {
+                guest.startRound(constraints.getAvoidTables(guest.getIndex()), constraints.getVisitTables(guest.getIndex()));
+            }
+        }
+    }
+
+    /**
+     * Seat the guest and propagate constraints to other guests for the rest of the round.
+     */
+    private void seat(Guest guest, Table table) {
+        table.seatAGuest(guest, round);
+        if (constraints.isConstrained(guest.getIndex())) {
+            for (int other : constraints.getSeparateFrom(guest.getIndex())) {
+                guests.get(other).forbid(table);
+            }
+            for (int other : constraints.getMustMeet(guest.getIndex())) {
+                Guest otherGuest = guests.get(other);
+                if (guest.getMeetings(otherGuest) == 0) {
+                    otherGuest.require(table);
+                }
+            }
+        }
+    }
+
+    public final void seatAsPlanned(@NotNull int[][] seating) {
+        int noOfRounds = seating.length > 0 ? seating[0].length : 0;
+        for (this.round = 1; this.round <= noOfRounds; this.round++) {
+            for (int i = 0; i < guests.size(); i++) {
+                this.tables.get(seating[i][this.round - 1]).seatAGuest(this.guests.get(i), this.round);
+            }
         }
+        this.round = noOfRounds;
     }
 
     public final void printSeating() {
@@ -51,9 +329,22 @@ public final class Usher {
         }
     }
 
-    public Usher(@NotNull List<Guest> guests, @NotNull List<Table> tables, @NotNull NextTableAllocator nextTableAllocator) {
+    public Usher(@NotNull List<Guest> guests,
+                 @NotNull List<Table> tables,
+                 @NotNull NextTableAllocator nextTableAllocator,
+                 @NotNull PairingConstraints constraints,
+                 @NotNull Random random,
+                 ForkJoinPool seatingPool) {
         this.guests = guests;
         this.tables = tables;
         this.nextTableAllocator = nextTableAllocator;
+        this.constraints = constraints;
+        this.random = random;
+        this.seatingPool = seatingPool;
+        this.limitedCapacity = tables.stream().anyMatch(table -> table.getCapacity() < guests.size());
+        // seat constrained guests first while there is the most choice
+        this.seatingOrder = constraints.isEmpty()
+                ? guests
+                : guests.stream().sorted(comparingInt(guest -> constraints.isConstrained(guest.getIndex()) ? 0 : 1)).collect(Collectors.toList());
     }
 }
@@ -0,0 +1,268 @@
+package net.landj.tableplannerj.search;
+
+import net.landj.tableplannerj.model.PlanFactory;
+import net.landj.tableplannerj.model.PlanFilter;
+import net.landj.tableplannerj.model.TablePlan;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.lang.Math.pow;
+import static net.landj.tableplannerj.TablePlanner.BASE_GUEST_RATING;
+
+/**
+ * Plans for very large events made of plans for small rooms.<p/>
+ * Tables are split into rooms of a few tables (at least one for each session, so guests can visit a new table every round)
+ * and guests are split between rooms at random, in proportion to room capacity.
+ * Each room is planned separately (in parallel) as an event of its own, the best of a few plans is used.<br/>
+ * Guests then migrate between rooms, so people still mix globally: two guests from different rooms swap their seating
+ * from a round on (a "tail"), when it lowers the cost of repeated meetings. Guests of different rooms never share a table,
+ * so a guest taking over a tail never returns to a table and the number of guests at each table doesn't change.
+ * Cost of a pair of guests who meet {@code m} times (including previous events) is {@code 1 + BASE_GUEST_RATING + ... + BASE_GUEST_RATING ^ (m - 1)},
+ * as in {@link LargeNeighbourhoodSearch}.<p/>
+ * Each room and each migration is bounded, so solve time grows about linearly with the number of guests.
+ * Room plans don't see meeting history, attributes or constraints, the combined plan is rated and checked as any other plan.
+ */
+public final class DecompositionSearch {
+    private static final int DEFAULT_ROOM_TABLES = 4;
+    private static final int ROOM_ITERATIONS = 20;
+    private static final int MIGRATION_ATTEMPTS_PER_GUEST = 2;
+
+    private final PlanFactory planFactory;
+    private final int[][] rooms; // [room] table indexes
+    private final int[] roomOfTable;
+
+    /**
+     * Plan the event.
+     *
+     * @param random random numbers of the plan (the same sequence gives the same plan)
+     * @return combined plan (run)
+     */
+    @NotNull
+    public final TablePlan solve(@NotNull Random random) {
+        List<List<Integer>> guestsByRoom = splitGuests(random);
+        long roomSeed = random.nextLong();
+        ForkJoinPool pool = planFactory.getSeatingPool() != null ? planFactory.getSeatingPool() : ForkJoinPool.commonPool();
+        int[][] seating = new int[planFactory.getNoOfGuests()][];
+        pool.submit(() -> IntStream.range(0, rooms.length).parallel().forEach(room -> {
+            int[][] roomSeating = solveRoom(room, guestsByRoom.get(room), PlanFactory.iterationRandom(roomSeed, room));
+            for (int i = 0; i < roomSeating.length; i++) {
+                int[] guestSeating = roomSeating[i];
+                for (int round = 0; round < guestSeating.length; round++) {
+                    guestSeating[round] = rooms[room][guestSeating[round]];
+                }
+                seating[guestsByRoom.get(room).get(i)] = guestSeating;
+            }
+        })).join();
+        if (rooms.length > 1) {
+            new Migration(seating, random).run();
+        }
+        return planFactory.rebuildPlan(seating);
+    }
+
+    private List<List<Integer>> splitGuests(Random random) {
+        List<Integer> guests = IntStream.range(0, planFactory.getNoOfGuests()).boxed().collect(Collectors.toList());
+        Collections.shuffle(guests, random);
+        long[] capacities = new long[rooms.length];
+        long totalCapacity = 0;
+        for (int room = 0; room < rooms.length; room++) {
+            for (int table : rooms[room]) {
+                capacities[room] += planFactory.getCapacities()[table];
+            }
+            totalCapacity += capacities[room];
+        }
+        List<List<Integer>> guestsByRoom = new ArrayList<>(rooms.length);
+        int start = 0;
+        long cumulativeCapacity = 0;
+        for (int room = 0; room < rooms.length; room++) {
+            cumulativeCapacity += capacities[room];
+            int end = (int) (guests.size() * cumulativeCapacity / totalCapacity);
+            guestsByRoom.add(guests.subList(start, end));
+            start = end;
+        }
+        return guestsByRoom;
+    }
+
+    /**
+     * Best of a few plans of the room as an event of its own.
+     *
+     * @return table index (within the room) for each guest of the room and round
+     */
+    private int[][] solveRoom(int room, List<Integer> guests, Random random) {
+        List<String> tableNames = IntStream.of(rooms[room]).mapToObj(planFactory.getTableNames()::get).collect(Collectors.toList());
+        List<String> guestNames = guests.stream().map(planFactory.getGuestNames()::get).collect(Collectors.toList());
+        int[] capacities = IntStream.of(rooms[room]).map(table -> planFactory.getCapacities()[table]).toArray();
+        PlanFactory roomFactory = new PlanFactory(planFactory.getNoOfSessions(), tableNames, guestNames, null, null, null, capacities, null);
+        PlanFilter filter = new PlanFilter(roomFactory);
+        TablePlan best = null;
+        for (int i = 0; i < ROOM_ITERATIONS; i++) {
+            TablePlan plan = roomFactory.newPlan(random);
+            plan.run();
+            if (best == null || isBetter(plan, best, filter)) {
+                best = plan;
+            }
+            if (filter.isPerfect(plan)) {
+                break;
+            }
+        }
+        return best.getSeating();
+    }
+
+    private static boolean isBetter(TablePlan plan, TablePlan other, PlanFilter filter) {
+        if (filter.accepts(plan) != filter.accepts(other)) {
+            return filter.accepts(plan);
+        }
+        return plan.getExactRating().compareTo(other.getExactRating()) < 0;
+    }
+
+    public final int getNoOfRooms() {
+        return this.rooms.length;
+    }
+
+    /**
+     * @param roomTables number of tables in a room (at least number of sessions is used)
+     */
+    public DecompositionSearch(@NotNull PlanFactory planFactory, int roomTables) {
+        this.planFactory = planFactory;
+        int noOfTables = planFactory.getNoOfTables();
+        int noOfRooms = Math.max(1, noOfTables / Math.max(roomTables, planFactory.getNoOfSessions()));
+        this.rooms = new int[noOfRooms][];
+        this.roomOfTable = new int[noOfTables];
+        for (int room = 0; room < noOfRooms; room++) {
+            int first = noOfTables * room / noOfRooms;
+            int last = noOfTables * (room + 1) / noOfRooms;
+            rooms[room] = IntStream.range(first, last).toArray();
+            for (int table = first; table < last; table++) {
+                roomOfTable[table] = room;
+            }
+        }
+    }
+
+    public DecompositionSearch(@NotNull PlanFactory planFactory) {
+        this(planFactory, DEFAULT_ROOM_TABLES);
+    }
+
+    /**
+     * Swaps of seating tails between guests of different rooms, accepted when they lower the cost of repeated meetings.
+     */
+    private final class Migration {
+        private final int[][] seating; // [guest][round]
+        private final List<List<List<Integer>>> atTable; // [round][table] guests
+        private final int[][] pastMeetings; // null when nobody met before
+        private final int noOfRounds;
+        private final Random random;
+
+        private void run() {
+            int attempts = seating.length * MIGRATION_ATTEMPTS_PER_GUEST;
+            for (int round = 1; round < noOfRounds; round++) {
+                for (int attempt = 0; attempt < attempts; attempt++) {
+                    trySwap(round);
+                }
+            }
+        }
+
+        private void trySwap(int round) {
+            int guest = random.nextInt(seating.length);
+            int room = roomOfTable[seating[guest][round]];
+            int otherRoom = random.nextInt(rooms.length - 1);
+            if (otherRoom >= room) {
+                otherRoom++;
+            }
+            int otherTable = rooms[otherRoom][random.nextInt(rooms[otherRoom].length)];
+            List<Integer> candidates = atTable.get(round).get(otherTable);
+            if (candidates.isEmpty()) {
+                return;
+            }
+            int other = candidates.get(random.nextInt(candidates.size()));
+            if (!canSwap(guest, other, round)) {
+                return;
+            }
+            double before = cost(guest, other, round);
+            swap(guest, other, round);
+            if (cost(guest, other, round) >= before) {
+                swap(guest, other, round);
+            }
+        }
+
+        /**
+         * The guests may have swapped before, then one of them could return to a table of the other's tail.
+         */
+        private boolean canSwap(int guest, int other, int round) {
+            for (int r = round; r < noOfRounds; r++) {
+                for (int earlier = 0; earlier < round; earlier++) {
+                    if (seating[guest][earlier] == seating[other][r] || seating[other][earlier] == seating[guest][r]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void swap(int guest, int other, int round) {
+            for (int r = round; r < noOfRounds; r++) {
+                List<Integer> guestTable = atTable.get(r).get(seating[guest][r]);
+                List<Integer> otherTable = atTable.get(r).get(seating[other][r]);
+                guestTable.set(guestTable.indexOf(guest), other);
+                otherTable.set(otherTable.indexOf(other), guest);
+                int table = seating[guest][r];
+                seating[guest][r] = seating[other][r];
+                seating[other][r] = table;
+            }
+        }
+
+        /**
+         * Cost of pairs of each of the guests and anybody they sit with from the round on.
+         */
+        private double cost(int guest, int other, int round) {
+            return guestCost(guest, other, round) + guestCost(other, guest, round);
+        }
+
+        private double guestCost(int guest, int skip, int round) {
+            double cost = 0;
+            for (int r = round; r < noOfRounds; r++) {
+                for (int mate : atTable.get(r).get(seating[guest][r])) {
+                    if (mate != guest && mate != skip) {
+                        cost += pairCost(guest, mate);
+                    }
+                }
+            }
+            return cost;
+        }
+
+        private double pairCost(int guest, int other) {
+            int meetings = pastMeetings != null ? pastMeetings[guest][other] : 0;
+            for (int r = 0; r < noOfRounds; r++) {
+                if (seating[guest][r] == seating[other][r]) {
+                    meetings++;
+                }
+            }
+            return (pow(BASE_GUEST_RATING, meetings) - 1) / (BASE_GUEST_RATING - 1);
+        }
+
+        private Migration(int[][] seating, Random random) {
+            this.seating = seating;
+            this.random = random;
+            this.pastMeetings = planFactory.getPastMeetings();
+            this.noOfRounds = planFactory.getNoOfSessions();
+            this.atTable = new ArrayList<>(noOfRounds);
+            for (int round = 0; round < noOfRounds; round++) {
+                List<List<Integer>> tables = new ArrayList<>(planFactory.getNoOfTables());
+                for (int table = 0; table < planFactory.getNoOfTables(); table++) {
+                    tables.add(new ArrayList<>());
+                }
+                atTable.add(tables);
+            }
+            for (int guest = 0; guest < seating.length; guest++) {
+                for (int round = 0; round < noOfRounds; round++) {
+                    atTable.get(round).get(seating[guest][round]).add(guest);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.landj.tableplannerj.search;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Minimum cost assignment for a square cost matrix (Hungarian algorithm with potentials, O(n^3)).<p/>
+ * Forbidden assignments should be expressed with a large (but finite) cost.
+ */
+public final class HungarianAlgorithm {
+    private HungarianAlgorithm() {
+    }
+
+    /**
+     * Solve assignment problem.
+     *
+     * @param cost square matrix, {@code cost[row][column]}
+     * @return column assigned to each row
+     */
+    @NotNull
+    public static int[] solve(@NotNull double[][] cost) {
+        int n = cost.length;
+        // 1-based arrays, index 0 is a virtual row/column
+        double[] rowPotential = new double[n + 1];
+        double[] columnPotential = new double[n + 1];
+        int[] rowOfColumn = new int[n + 1];
+        int[] way = new int[n + 1];
+        double[] minSlack = new double[n + 1];
+        boolean[] used = new boolean[n + 1];
+
+        for (int row = 1; row <= n; row++) {
+            rowOfColumn[0] = row;
+            int column = 0;
+            Arrays.fill(minSlack, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[column] = true;
+                int currentRow = rowOfColumn[column];
+                double delta = Double.POSITIVE_INFINITY;
+                int nextColumn = 0;
+                for (int j = 1; j <= n; j++) {
+                    if (!used[j]) {
+                        double slack = cost[currentRow - 1][j - 1] - rowPotential[currentRow] - columnPotential[j];
+                        if (slack < minSlack[j]) {
+                            minSlack[j] = slack;
+                            way[j] = column;
+                        }
+                        if (minSlack[j] < delta) {
+                            delta = minSlack[j];
+                            nextColumn = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= n; j++) {
+                    if (used[j]) {
+                        rowPotential[rowOfColumn[j]] += delta;
+                        columnPotential[j] -= delta;
+                    } else {
+                        minSlack[j] -= delta;
+                    }
+                }
+                column = nextColumn;
+            } while (rowOfColumn[column] != 0);
+
+            // unwind augmenting path
+            do {
+                int previousColumn = way[column];
+                rowOfColumn[column] = rowOfColumn[previousColumn];
+                column = previousColumn;
+            } while (column != 0);
+        }
+
+        int[] assignment = new int[n];
+        for (int j = 1; j <= n; j++) {
+            assignment[rowOfColumn[j] - 1] = j - 1;
+        }
+        return assignment;
+    }
+}
@@ -0,0 +1,415 @@
+package net.landj.tableplannerj.search;
+
+import net.landj.tableplannerj.model.GuestAttributes;
+import net.landj.tableplannerj.model.PairingConstraints;
+import net.landj.tableplannerj.model.PlanFactory;
+import net.landj.tableplannerj.model.TablePlan;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import static java.lang.Math.pow;
+import static net.landj.tableplannerj.TablePlanner.BASE_GUEST_RATING;
+
+/**
+ * Destroy-and-repair improvement of a complete plan.<p/>
+ * Each step frees one guest from every table of a round and re-seats the freed guests optimally using {@link HungarianAlgorithm}.
+ * A step covers either a single round or a pair of rounds. For a pair, freed guests swap their tables in both rounds
+ * at once (a "ticket"), which allows moves even when every guest has to visit every table.
+ * In a series of events, a step can also cover all rounds of an event.<br/>
+ * Freed guests never share a table in the freed rounds, so the assignment cost is exact.
+ * Cost of a pair of guests who meet {@code m} times (including previous events) is {@code 1 + BASE_GUEST_RATING + ... + BASE_GUEST_RATING ^ (m - 1)}
+ * (the same growth as guest score), increased for each follow-up into a neighbouring round
+ * and for shared {@link GuestAttributes} values.<p/>
+ * Number of guests at each table in each round doesn't change, so the table score of the plan is kept.
+ * Guests are never moved to a table they've sat at in another round, or next to someone they must be kept apart from
+ * (see {@link PairingConstraints}). Plans breaking more constraints than the original one are not accepted.
+ * The search keeps going until a full pass over all rounds doesn't improve any of them.<p/>
+ * A series of events can be improved as one seating with the rounds of all events one after another.
+ * Guests can return to a table at a later event and follow-ups only count between sessions of the same event.
+ */
+public final class LargeNeighbourhoodSearch {
+    private static final double FORBIDDEN = 1e12;
+    private static final double BROKEN_CONSTRAINT = 1e6;
+    private static final int MAX_PASSES = 100;
+    /**
+     * Meetings within an event of a series weigh this much more than the geometric middle weight, so events are rated closer
+     * to a single plan without more repeats in the series (16 guests at 4 tables and 2 events: average event rating 30 instead of 34,
+     * 40 guests at 5 tables and 6 events: 174 instead of 215).
+     */
+    private static final double EVENT_WEIGHT_FACTOR = 16;
+
+    private final PlanFactory planFactory;
+
+    /**
+     * Improve the plan.
+     *
+     * @param plan plan to start from (already run)
+     * @return improved plan, or the original one if nothing better was found
+     */
+    @NotNull
+    public TablePlan improve(@NotNull TablePlan plan) {
+        return improve(plan, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Improve the plan using given random numbers (the same sequence gives the same result).
+     */
+    @NotNull
+    public TablePlan improve(@NotNull TablePlan plan, @NotNull Random random) {
+        Neighbourhood neighbourhood = new Neighbourhood(plan.getSeating(), planFactory.getNoOfTables(), planFactory.getNoOfSessions(),
+                planFactory.getPastMeetings(), planFactory.getConstraints(), planFactory.getAttributes(), random);
+        if (!neighbourhood.optimise()) {
+            return plan;
+        }
+        TablePlan improved = planFactory.rebuildPlan(neighbourhood.seating);
+        return improved.getExactRating().compareTo(plan.getExactRating()) <= 0
+                && improved.getConstraintViolations() <= plan.getConstraintViolations() ? improved : plan;
+    }
+
+    /**
+     * Improve a series of events planned together, each event with the sessions of the plan factory.
+     *
+     * @param seating table index for each guest (first dimension) and round of all events (second dimension,
+     *                sessions of the first event followed by sessions of the next one), improved in place
+     * @return whether the seating was improved
+     */
+    public boolean improveSeries(@NotNull int[][] seating, @NotNull Random random) {
+        return new Neighbourhood(seating, planFactory.getNoOfTables(), planFactory.getNoOfSessions(),
+                planFactory.getPastMeetings(), planFactory.getConstraints(), planFactory.getAttributes(), random).optimise();
+    }
+
+    public LargeNeighbourhoodSearch(@NotNull PlanFactory planFactory) {
+        this.planFactory = planFactory;
+    }
+
+    /**
+     * Seating of a single plan in a shape suitable for quick destroy-and-repair steps.
+     */
+    private static final class Neighbourhood {
+        private final int[][] seating; // [guest][round]
+        private final int[][] position; // [guest][round] index in atTable
+        private final int[][][] atTable; // [round][table] guests
+        private final int[][] meetings; // [guest][guest]
+        private final int[][] pastMeetings; // [guest][guest] at previous events (null when nobody met before)
+        private final PairingConstraints constraints;
+        private final GuestAttributes attributes;
+        private final int noOfGuests;
+        private final int noOfRounds;
+        private final int noOfTables;
+        private final int noOfSessions; // rounds of a single event
+        private final int[][] eventRounds; // [event] rounds
+        private final double eventWeight; // of meetings within an event - EVENT_WEIGHT_FACTOR times half way (geometrically) between a first meeting and an average one in the series
+        private final Random random;
+        // scratch space
+        private final int[] shares;
+        private final int[] touched;
+        private final boolean[] isFreed;
+
+        private boolean optimise() {
+            boolean anyImprovement = false;
+            boolean improved = true;
+            for (int pass = 0; improved && pass < MAX_PASSES; pass++) {
+                improved = false;
+                for (int round = 0; round < noOfRounds; round++) {
+                    if (optimiseRound(round)) {
+                        improved = true;
+                    }
+                }
+                anyImprovement |= improved;
+            }
+            return anyImprovement;
+        }
+
+        private boolean optimiseRound(int round) {
+            int largest = 0;
+            for (int[] guests : atTable[round]) {
+                largest = Math.max(largest, guests.length);
+            }
+
+            boolean improved = false;
+            // free each guest around once on average, both on its own and together with another round
+            for (int attempt = 0; attempt < largest; attempt++) {
+                improved |= step(new int[]{round});
+                if (noOfRounds > 1) {
+                    int other = random.nextInt(noOfRounds - 1);
+                    improved |= step(new int[]{round, other < round ? other : other + 1});
+                }
+                if (noOfRounds > noOfSessions) {
+                    // series - guests swap their seating of the whole event
+                    improved |= step(eventRounds[round / noOfSessions]);
+                }
+            }
+            return improved;
+        }
+
+        private boolean step(int[] rounds) {
+            int[] freed = chooseFreed(rounds);
+            int n = freed.length;
+            if (n < 2) {
+                return false;
+            }
+
+            for (int guest : freed) {
+                isFreed[guest] = true;
+            }
+            double[][] cost = new double[n][n];
+            double currentCost = 0;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    cost[i][j] = ticketCost(freed[i], freed[j], rounds);
+                }
+                currentCost += cost[i][i];
+            }
+
+            int[] assignment = HungarianAlgorithm.solve(cost);
+            double newCost = 0;
+            for (int i = 0; i < n; i++) {
+                newCost += cost[i][assignment[i]];
+            }
+
+            // current seating is always allowed, so a forbidden move is never cheaper
+            boolean improved = newCost < currentCost - 1e-9 && newCost < FORBIDDEN;
+            if (improved) {
+                apply(freed, assignment, rounds);
+            }
+            for (int guest : freed) {
+                isFreed[guest] = false;
+            }
+            return improved;
+        }
+
+        /**
+         * Pick at most one guest from each table of the first round, so that no two of them share a table in any of the rounds.
+         */
+        private int[] chooseFreed(int[] rounds) {
+            int[][] tablesInRound = atTable[rounds[0]];
+            boolean[][] taken = new boolean[rounds.length][noOfTables];
+            int[] freed = new int[noOfTables];
+            int n = 0;
+            int firstTable = random.nextInt(noOfTables);
+            for (int t = 0; t < noOfTables; t++) {
+                int[] guests = tablesInRound[(firstTable + t) % noOfTables];
+                for (int tries = 0; tries < 3 && guests.length > 0; tries++) {
+                    int guest = guests[random.nextInt(guests.length)];
+                    boolean free = true;
+                    for (int k = 0; k < rounds.length && free; k++) {
+                        free = !taken[k][seating[guest][rounds[k]]];
+                    }
+                    if (free) {
+                        for (int k = 0; k < rounds.length; k++) {
+                            taken[k][seating[guest][rounds[k]]] = true;
+                        }
+                        freed[n++] = guest;
+                        break;
+                    }
+                }
+            }
+            int[] result = new int[n];
+            System.arraycopy(freed, 0, result, 0, n);
+            return result;
+        }
+
+        /**
+         * Cost of {@code guest} taking tables of {@code owner} in given rounds.
+         */
+        private double ticketCost(int guest, int owner, int[] rounds) {
+            for (int round : rounds) {
+                // tables can't be visited twice in the same event
+                int first = round - round % noOfSessions;
+                for (int other = first; other < first + noOfSessions; other++) {
+                    if (!contains(rounds, other) && seating[guest][other] == seating[owner][round]) {
+                        return FORBIDDEN;
+                    }
+                }
+            }
+            double cost = 0;
+            if (constraints.isConstrained(guest)) {
+                for (int round : rounds) {
+                    if (constraints.getAvoidTables(guest).get(seating[owner][round])) {
+                        cost += BROKEN_CONSTRAINT;
+                    }
+                    for (int other : constraints.getSeparateFrom(guest)) {
+                        if (other != owner && seating[other][round] == seating[owner][round]) {
+                            cost += BROKEN_CONSTRAINT;
+                        }
+                    }
+                }
+            }
+
+            int noOfTouched = 0;
+            for (int round : rounds) {
+                for (int other : atTable[round][seating[owner][round]]) {
+                    if (!isFreed[other]) {
+                        if (shares[other]++ == 0) {
+                            touched[noOfTouched++] = other;
+                        }
+                    }
+                }
+            }
+
+            for (int t = 0; t < noOfTouched; t++) {
+                int other = touched[t];
+                int meetingsOutside = meetings[guest][other] + (pastMeetings != null ? pastMeetings[guest][other] : 0);
+                int followUps = 0;
+                for (int round : rounds) {
+                    if (seating[guest][round] == seating[other][round]) {
+                        meetingsOutside--;
+                    }
+                    if (seating[owner][round] == seating[other][round]) {
+                        followUps += (round % noOfSessions > 0 ? followUp(guest, owner, other, rounds, round - 1) : 0)
+                                + (round % noOfSessions < noOfSessions - 1 ? followUp(guest, owner, other, rounds, round + 1) : 0);
+                    }
+                }
+                double pairCost = 0;
+                for (int m = meetingsOutside; m < meetingsOutside + shares[other]; m++) {
+                    pairCost += pow(BASE_GUEST_RATING, m);
+                }
+                if (noOfRounds > noOfSessions) {
+                    pairCost += eventWeight * eventPairCost(guest, owner, other, rounds);
+                }
+                cost += pairCost * (1 + followUps);
+                if (!attributes.isEmpty()) {
+                    cost += ((double) shares[other] * attributes.countShared(guest, other)) / attributes.getNoOfKeys();
+                }
+                shares[other] = 0;
+            }
+            return cost;
+        }
+
+        /**
+         * In a series, meetings within each event cost as in a single plan (times {@link #eventWeight}) on top of meetings
+         * in the whole series, so that every event is a good plan on its own.
+         */
+        private double eventPairCost(int guest, int owner, int other, int[] rounds) {
+            double cost = 0;
+            for (int k = 0; k < rounds.length; k++) {
+                int first = rounds[k] - rounds[k] % noOfSessions;
+                if (k > 0 && rounds[k - 1] - rounds[k - 1] % noOfSessions == first) {
+                    continue; // event counted already
+                }
+                int meetingsOutside = 0;
+                int shared = 0;
+                for (int round = first; round < first + noOfSessions; round++) {
+                    if (contains(rounds, round)) {
+                        shared += seating[owner][round] == seating[other][round] ? 1 : 0;
+                    } else {
+                        meetingsOutside += seating[guest][round] == seating[other][round] ? 1 : 0;
+                    }
+                }
+                for (int m = meetingsOutside; m < meetingsOutside + shared; m++) {
+                    cost += pow(BASE_GUEST_RATING, m);
+                }
+            }
+            return cost;
+        }
+
+        private int followUp(int guest, int owner, int other, int[] rounds, int round) {
+            if (round < 0 || round >= noOfRounds) {
+                return 0;
+            }
+            int table = contains(rounds, round) ? seating[owner][round] : seating[guest][round];
+            return table == seating[other][round] ? 1 : 0;
+        }
+
+        private void apply(int[] freed, int[] assignment, int[] rounds) {
+            int n = freed.length;
+            int[][] tickets = new int[n][rounds.length];
+            int[][] seats = new int[n][rounds.length];
+            for (int i = 0; i < n; i++) {
+                for (int k = 0; k < rounds.length; k++) {
+                    tickets[i][k] = seating[freed[i]][rounds[k]];
+                    seats[i][k] = position[freed[i]][rounds[k]];
+                    meet(freed[i], rounds[k], tickets[i][k], -1);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                int guest = freed[i];
+                int slot = assignment[i];
+                for (int k = 0; k < rounds.length; k++) {
+                    int round = rounds[k];
+                    int table = tickets[slot][k];
+                    seating[guest][round] = table;
+                    position[guest][round] = seats[slot][k];
+                    atTable[round][table][seats[slot][k]] = guest;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                for (int k = 0; k < rounds.length; k++) {
+                    meet(freed[i], rounds[k], seating[freed[i]][rounds[k]], 1);
+                }
+            }
+        }
+
+        private void meet(int guest, int round, int table, int change) {
+            for (int other : atTable[round][table]) {
+                if (!isFreed[other]) {
+                    meetings[guest][other] += change;
+                    meetings[other][guest] += change;
+                }
+            }
+        }
+
+        private static boolean contains(int[] rounds, int round) {
+            for (int r : rounds) {
+                if (r == round) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Neighbourhood(int[][] seating,
+                              int noOfTables,
+                              int noOfSessions,
+                              int[][] pastMeetings,
+                              PairingConstraints constraints,
+                              GuestAttributes attributes,
+                              Random random) {
+            this.attributes = attributes;
+            this.seating = seating;
+            this.pastMeetings = pastMeetings;
+            this.constraints = constraints;
+            this.noOfTables = noOfTables;
+            this.noOfSessions = noOfSessions;
+            this.random = random;
+            this.eventRounds = new int[noOfSessions > 0 ? (seating.length > 0 ? seating[0].length : 0) / noOfSessions : 0][];
+            for (int event = 0; event < eventRounds.length; event++) {
+                eventRounds[event] = IntStream.range(event * noOfSessions, (event + 1) * noOfSessions).toArray();
+            }
+            this.noOfGuests = seating.length;
+            this.noOfRounds = noOfGuests > 0 ? seating[0].length : 0;
+            this.position = new int[noOfGuests][noOfRounds];
+            this.meetings = new int[noOfGuests][noOfGuests];
+            this.atTable = new int[noOfRounds][noOfTables][];
+            this.shares = new int[noOfGuests];
+            this.touched = new int[noOfGuests];
+            this.isFreed = new boolean[noOfGuests];
+
+            for (int round = 0; round < noOfRounds; round++) {
+                int[] counts = new int[noOfTables];
+                for (int guest = 0; guest < noOfGuests; guest++) {
+                    position[guest][round] = counts[seating[guest][round]]++;
+                }
+                for (int table = 0; table < noOfTables; table++) {
+                    atTable[round][table] = new int[counts[table]];
+                }
+                for (int guest = 0; guest < noOfGuests; guest++) {
+                    int[] guests = atTable[round][seating[guest][round]];
+                    for (int seat = 0; seat < position[guest][round]; seat++) {
+                        meetings[guest][guests[seat]]++;
+                        meetings[guests[seat]][guest]++;
+                    }
+                    guests[position[guest][round]] = guest;
+                }
+            }
+            long allMeetings = 0;
+            for (int[] guestMeetings : meetings) {
+                allMeetings += IntStream.of(guestMeetings).sum();
+            }
+            this.eventWeight = noOfGuests > 1 ? EVENT_WEIGHT_FACTOR * pow(BASE_GUEST_RATING, Math.ceil((double) allMeetings / noOfGuests / (noOfGuests - 1)) / 2) : 1;
+        }
+    }
+}
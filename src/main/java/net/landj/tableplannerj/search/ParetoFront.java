@@ -0,0 +1,107 @@
+package net.landj.tableplannerj.search;
+
+import net.landj.tableplannerj.TopPlans;
+import net.landj.tableplannerj.model.Objective;
+import net.landj.tableplannerj.model.TablePlan;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Archive of non-dominated plans over separate {@link Objective}s (all minimised).<p/>
+ * A plan dominates another one when it is no worse in any objective and better in at least one.
+ * Plans are kept sorted by the first objective: only plans before a new one (no worse in the first objective) can dominate it
+ * and only plans after it can be dominated by it, so a check doesn't go through the whole front.<br/>
+ * Plans with the same objectives as a plan in the front are not added (first one found is kept).<br/>
+ * The plan with the best (lowest) product rating is always in the front, as the rating grows with each objective.
+ * Not thread safe, used by the results consumer only.
+ */
+public final class ParetoFront {
+    private final List<TopPlans.Entry> front = new ArrayList<>();
+    private int dominated;
+
+    /**
+     * Add a plan unless it is dominated, removing plans it dominates.
+     *
+     * @return entry if the plan was added to the front, {@code null} otherwise
+     */
+    public final TopPlans.Entry offer(@NotNull TablePlan plan) {
+        double[] objectives = Objective.getValues(plan);
+        int position = position(objectives[0], true);
+        for (int i = 0; i < position; i++) {
+            if (dominatesOrEquals(front.get(i).getObjectives(), objectives)) {
+                dominated++;
+                return null;
+            }
+        }
+        // plans with the same first objective can be dominated too
+        int firstDominated = position(objectives[0], false);
+        for (int i = front.size() - 1; i >= firstDominated; i--) {
+            if (dominatesOrEquals(objectives, front.get(i).getObjectives())) {
+                front.remove(i);
+                dominated++;
+            }
+        }
+        TopPlans.Entry entry = new TopPlans.Entry(plan.getRating(), plan.getFingerprint(), plan.getSeating(), objectives);
+        front.add(position(objectives[0], true), entry);
+        return entry;
+    }
+
+    /**
+     * Add a plan which was in the front before (e.g. from a checkpoint), so it is not dominated by any plan in the front.
+     */
+    public final void restore(@NotNull TopPlans.Entry entry) {
+        front.add(position(entry.getObjectives()[0], true), entry);
+    }
+
+    /**
+     * @param inclusive whether to skip plans with the same first objective
+     * @return index of the first plan with the first objective greater (or equal unless inclusive) than given value
+     */
+    private int position(double firstObjective, boolean inclusive) {
+        int low = 0;
+        int high = front.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            double value = front.get(middle).getObjectives()[0];
+            if (value < firstObjective || inclusive && value == firstObjective) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static boolean dominatesOrEquals(double[] objectives, double[] other) {
+        for (int i = 0; i < objectives.length; i++) {
+            if (objectives[i] > other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public final int size() {
+        return front.size();
+    }
+
+    /**
+     * @return number of plans rejected or removed as dominated
+     */
+    public final int getDominated() {
+        return this.dominated;
+    }
+
+    /**
+     * @return plans in the front from the best rating
+     */
+    @NotNull
+    public final List<TopPlans.Entry> getPlans() {
+        List<TopPlans.Entry> plans = new ArrayList<>(front);
+        plans.sort(Comparator.comparingDouble(TopPlans.Entry::getRating));
+        return plans;
+    }
+}
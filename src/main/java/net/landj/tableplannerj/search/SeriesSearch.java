@@ -0,0 +1,99 @@
+package net.landj.tableplannerj.search;
+
+import net.landj.tableplannerj.model.PlanFactory;
+import net.landj.tableplannerj.model.SeriesPlan;
+import net.landj.tableplannerj.model.TablePlan;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Joint planning of a series of recurring events for the same guests.<p/>
+ * Events of the series are seated one after another first, each one seeing meetings at the earlier events as history.
+ * Then the whole series is improved as one seating by {@link LargeNeighbourhoodSearch} (rounds of all events one after another,
+ * moves within an event, between events and of whole events), so earlier events are planned with the later ones in mind
+ * and repeated meetings are spread evenly over pairs of guests instead of piling up in the last events.
+ */
+public final class SeriesSearch {
+    private static final int EVENT_CANDIDATES = 8;
+
+    private final PlanFactory planFactory;
+    private final int noOfEvents;
+    private final LargeNeighbourhoodSearch largeNeighbourhoodSearch;
+
+    /**
+     * Plan the series.
+     *
+     * @param random random numbers of the series (the same sequence gives the same series)
+     */
+    @NotNull
+    public final SeriesPlan solve(@NotNull Random random) {
+        int noOfSessions = planFactory.getNoOfSessions();
+        int noOfGuests = planFactory.getNoOfGuests();
+        int[][] seating = new int[noOfGuests][noOfEvents * noOfSessions];
+        int[][] meetings = new int[noOfGuests][];
+        for (int guest = 0; guest < noOfGuests; guest++) {
+            meetings[guest] = planFactory.hasPastMeetings() ? planFactory.getPastMeetings()[guest].clone() : new int[noOfGuests];
+        }
+        for (int event = 0; event < noOfEvents; event++) {
+            TablePlan best = null;
+            for (int candidate = 0; candidate < EVENT_CANDIDATES; candidate++) {
+                TablePlan plan = planFactory.newPlan(random, meetings);
+                plan.run();
+                if (best == null || SeriesPlan.EVENT_ORDER.compare(plan, best) < 0) {
+                    best = plan;
+                }
+            }
+            int[][] eventSeating = best.getSeating();
+            for (int guest = 0; guest < noOfGuests; guest++) {
+                System.arraycopy(eventSeating[guest], 0, seating[guest], event * noOfSessions, noOfSessions);
+                for (int other = 0; other < guest; other++) {
+                    for (int round = 0; round < noOfSessions; round++) {
+                        if (eventSeating[guest][round] == eventSeating[other][round]) {
+                            meetings[guest][other]++;
+                            meetings[other][guest]++;
+                        }
+                    }
+                }
+            }
+        }
+        largeNeighbourhoodSearch.improveSeries(seating, random);
+        return new SeriesPlan(planFactory, seating);
+    }
+
+    /**
+     * Plan a single event for comparison with the events of a series, the best of a few plans improved by {@link LargeNeighbourhoodSearch}.
+     *
+     * @param random random numbers of the plan (the same sequence gives the same plan)
+     * @see SeriesPlan#print(TablePlan)
+     */
+    @NotNull
+    public final TablePlan solveStandalone(@NotNull Random random) {
+        TablePlan best = null;
+        for (int candidate = 0; candidate < EVENT_CANDIDATES; candidate++) {
+            TablePlan plan = planFactory.newPlan(random);
+            plan.run();
+            plan = largeNeighbourhoodSearch.improve(plan, random);
+            if (best == null || SeriesPlan.EVENT_ORDER.compare(plan, best) < 0) {
+                best = plan;
+            }
+        }
+        return best;
+    }
+
+    public final int getNoOfEvents() {
+        return this.noOfEvents;
+    }
+
+    /**
+     * @param planFactory factory of a single event of the series
+     */
+    public SeriesSearch(@NotNull PlanFactory planFactory, int noOfEvents) {
+        if (noOfEvents < 1) {
+            throw new IllegalArgumentException("At least 1 event is required");
+        }
+        this.planFactory = planFactory;
+        this.noOfEvents = noOfEvents;
+        this.largeNeighbourhoodSearch = new LargeNeighbourhoodSearch(planFactory);
+    }
+}
@@ -7,10 +7,10 @@ import com.github.ajalt.clikt.parameters.options.validate
 import com.github.ajalt.clikt.parameters.types.file
 import com.github.ajalt.clikt.parameters.types.int
 import net.landj.tableplanner.ParameterStats.Parameter.*
+import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.Channel
 import java.io.File
-import java.util.concurrent.ExecutorService
-import java.util.concurrent.Executors
-import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.math.*
 
 const val NO_OF_GUESTS = 16
@@ -18,6 +18,7 @@ const val NO_OF_TABLES = 4
 const val NO_OF_SESSIONS = 4
 const val NO_OF_ITERATIONS = 10000
 const val NO_OF_THREADS = 8
+const val RESULTS_CAPACITY = 1024
 const val BASE_GUEST_RATING = 2.0
 const val FILE_SIZE_LIMIT = 1024
 
@@ -393,33 +394,24 @@ class TablePlanner : CliktCommand(help = "tableplanner v1.0-kt") {
     private val csvFileOption: File? by option("-o", "--output", help = "Output file (CSV)").file()
     private val noOfIterationsOption: Int by option("-it", "--iterations", help = "Number of possible runs").int().default(NO_OF_ITERATIONS)
             .validate { require(it in 100..1000000) { "iterations between 100 and 1,000,000 are expected" } }
-    private val noOfThreadsOption: Int by option("-th", "--threads", help = "Number of calculation threads").int().default(NO_OF_THREADS)
-            .validate { require(it in 2..16) { "2 threads minimum are required" } }
-
-    private val executorService: ExecutorService by lazy { Executors.newFixedThreadPool(noOfThreadsOption) }
-    private val resultQueue = LinkedBlockingQueue<TablePlan>()
+    private val noOfThreadsOption: Int by option("-th", "--threads", help = "Number of calculation workers").int().default(NO_OF_THREADS)
+            .validate { require(it in 1..16) { "between 1 and 16 workers are supported" } }
 
     private val planFactory: PlanFactory by lazy { initialisePlanFactory() }
 
     private var processedResults = 0
 
-    var solutionFound: Boolean = false
-
-    override fun run() {
+    override fun run() = runBlocking {
         try {
             println("guests=${planFactory.noOfGuests}, tables=${planFactory.noOfTables}, sessions=${planFactory.noOfSessions}, iterations=$noOfIterationsOption")
 
             val start = System.currentTimeMillis().toDouble()
 
-            executorService.submit(PlansGenerator())
-
             val plan = processResults()
 
             val stop = System.currentTimeMillis()
             println("Result in: ${(stop - start) / 1000} (results processed: $processedResults)")
 
-            executorService.shutdownNow()
-
             if (plan != null) {
                 plan.print()
                 if (csvFileOption != null) {
@@ -458,9 +450,14 @@ class TablePlanner : CliktCommand(help = "tableplanner v1.0-kt") {
         return if (logResult - logResultInt > 0.0) logResultInt + 1 else logResultInt
     }
 
-    private fun processResults(): TablePlan? {
-        val filteredPlans: MutableList<TablePlan> = mutableListOf()
-        val allPlans: MutableList<TablePlan> = mutableListOf()
+    /**
+     * Plans are generated by [noOfThreadsOption] workers on [Dispatchers.Default] and sent through a bounded channel
+     * to this (single) consumer. Workers wait when the consumer falls behind.
+     * A perfect plan cancels the workers, which stop at their next plan.
+     */
+    private suspend fun processResults(): TablePlan? = coroutineScope {
+        var bestPlan: TablePlan? = null
+        var fallbackPlan: TablePlan? = null
 
         val maxFollowUps = determineMaxFollowUps()
         val ignoreTableScore = noOfTablesOption - noOfSessionsOption >= 1
@@ -468,46 +465,52 @@ class TablePlanner : CliktCommand(help = "tableplanner v1.0-kt") {
 
         println("max follow ups = $maxFollowUps, ignore table score = $ignoreTableScore")
 
-        while (processedResults < noOfIterationsOption) {
-            val plan = resultQueue.take()
+        val results = generatePlans()
+        for (plan in results) {
             processedResults++
 
             if (plan.rating == perfectRating) {
-                solutionFound = true
-                return plan
+                // don't look any further, we found a perfect solution
+                coroutineContext.cancelChildren()
+                return@coroutineScope plan
             } else if (plan.followUps.max <= maxFollowUps && (ignoreTableScore || plan.tableScore == 1.0)) {
-                filteredPlans.add(plan)
+                if (bestPlan == null || plan.rating < bestPlan.rating) {
+                    bestPlan = plan
+                }
             }
 
-            allPlans.add(plan)
+            if (fallbackPlan == null || plan.rating < fallbackPlan.rating) {
+                fallbackPlan = plan
+            }
         }
 
-        return if (filteredPlans.size > 0) {
-            solutionFound = true
-            filteredPlans.minBy { p -> p.rating }
-        } else {
+        if (bestPlan == null) {
             println("What?")
-            allPlans.minBy { p -> p.rating }
         }
+        bestPlan ?: fallbackPlan
     }
 
-    private fun determinePerfectRating(): Double {
-        return if (planFactory.noOfGuests == planFactory.idealSeatingThreshold) BASE_GUEST_RATING else BASE_GUEST_RATING * 2
-    }
-
-    inner class PlansGenerator : Runnable {
-        override fun run() {
-            for (i in 0 until noOfIterationsOption) {
-                if (solutionFound) break
-
-                executorService.submit {
+    private fun CoroutineScope.generatePlans(): Channel<TablePlan> {
+        val results = Channel<TablePlan>(RESULTS_CAPACITY)
+        val nextIteration = AtomicInteger()
+        val workers = List(noOfThreadsOption) {
+            launch(Dispatchers.Default) {
+                while (isActive && nextIteration.getAndIncrement() < noOfIterationsOption) {
                     val plan = planFactory.newPlan()
                     plan.run()
-                    resultQueue.offer(plan)
+                    results.send(plan)
                 }
             }
         }
+        launch {
+            workers.joinAll()
+            results.close()
+        }
+        return results
+    }
 
+    private fun determinePerfectRating(): Double {
+        return if (planFactory.noOfGuests == planFactory.idealSeatingThreshold) BASE_GUEST_RATING else BASE_GUEST_RATING * 2
     }
 
 }
@@ -0,0 +1,179 @@
+package net.landj.tableplannerj;
+
+import net.landj.tableplannerj.api.DeadlineScheduler;
+import net.landj.tableplannerj.api.PlanRequest;
+import net.landj.tableplannerj.api.PlanResult;
+import net.landj.tableplannerj.api.TablePlannerService;
+import net.landj.tableplannerj.model.PlanFactory;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Deadline hit rates of concurrent searches under a synthetic load.<p/>
+ * Searches arrive one after another at a fixed interval, most of them small and urgent, every few of them large
+ * with a distant deadline. The same searches (same seeds) run twice: on a shared {@link DeadlineScheduler}
+ * with a fixed number of workers, and each on its own fixed thread pool with the same number of threads
+ * (as separate command line runs would, oversubscribing the processors). A search is on time when it finishes
+ * all its iterations (or finds a perfect plan) before its deadline, otherwise it gives the best plan found so far.
+ * Hit rate of all searches on the scheduler is the scheduler's own count ({@link DeadlineScheduler#getOnTime()}),
+ * searches on pools (and small and large searches) are counted the same way from their results.<br/>
+ * Run by {@code scripts/deadline-benchmark.sh}.
+ */
+@Command(name = "deadlines", description = "Deadline hit rates of concurrent searches on a shared scheduler and on a pool for each search")
+public final class DeadlineBenchmark implements Callable<Integer> {
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new DeadlineBenchmark()).execute(args));
+    }
+
+    @Option(names = {"--jobs"}, description = "Number of searches", defaultValue = "40")
+    private int noOfJobsOption;
+
+    @Option(names = {"--interval"}, description = "Milliseconds between arrivals of searches", defaultValue = "100")
+    private long intervalOption;
+
+    @Option(names = {"--large-every"}, description = "Every n-th search is large", defaultValue = "5")
+    private int largeEveryOption;
+
+    @Option(names = {"--small"}, paramLabel = "GUESTS:TABLES:SESSIONS:ITERATIONS", description = "Small search", defaultValue = "30:5:4:100")
+    private String smallOption;
+
+    @Option(names = {"--large"}, paramLabel = "GUESTS:TABLES:SESSIONS:ITERATIONS", description = "Large search", defaultValue = "200:10:5:200")
+    private String largeOption;
+
+    @Option(names = {"--small-deadline"}, description = "Milliseconds from arrival to the deadline of a small search", defaultValue = "500")
+    private long smallDeadlineOption;
+
+    @Option(names = {"--large-deadline"}, description = "Milliseconds from arrival to the deadline of a large search", defaultValue = "10000")
+    private long largeDeadlineOption;
+
+    @Option(names = {"-w", "--workers"}, description = "Workers of the scheduler and threads of each pool (processors by default)")
+    private int noOfWorkersOption = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    public Integer call() throws Exception {
+        if (noOfJobsOption < 1 || intervalOption < 0 || largeEveryOption < 1 || noOfWorkersOption < 1) {
+            throw new IllegalArgumentException("at least 1 search, every 1 or more large, 1 or more workers and non-negative interval are expected");
+        }
+        Job small = new Job(smallOption, smallDeadlineOption);
+        Job large = new Job(largeOption, largeDeadlineOption);
+        // warm up, so the first mode isn't slowed down by compilation
+        runJobs(small, large, Math.min(noOfJobsOption, 10), null);
+
+        System.out.println("searches=" + noOfJobsOption + " (every " + largeEveryOption + ". large), interval=" + intervalOption
+                + " ms, workers=" + noOfWorkersOption);
+        System.out.println("mode\tsmall on time\tlarge on time\tall on time\tmakespan ms");
+        for (boolean shared : new boolean[]{true, false}) {
+            DeadlineScheduler scheduler = shared ? new DeadlineScheduler(noOfWorkersOption) : null;
+            long start = System.nanoTime();
+            List<Outcome> outcomes = runJobs(small, large, noOfJobsOption, scheduler);
+            long makespan = System.nanoTime() - start;
+            List<Outcome> smallOutcomes = outcomes.stream().filter(outcome -> !outcome.large).collect(Collectors.toList());
+            List<Outcome> largeOutcomes = outcomes.stream().filter(outcome -> outcome.large).collect(Collectors.toList());
+            // a search is counted by the scheduler just after its result is handed over
+            for (long wait = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                 scheduler != null && scheduler.getOnTime() + scheduler.getLate() < outcomes.size() && System.nanoTime() - wait < 0; ) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            String all = scheduler != null
+                    ? hitRate(scheduler.getOnTime(), scheduler.getOnTime() + scheduler.getLate())
+                    : hitRate(outcomes);
+            System.out.println((shared ? "scheduler" : "pools") + '\t' + hitRate(smallOutcomes) + '\t' + hitRate(largeOutcomes)
+                    + '\t' + all + '\t' + TimeUnit.NANOSECONDS.toMillis(makespan));
+        }
+        return 0;
+    }
+
+    /**
+     * @param scheduler scheduler shared by all searches (closed at the end), {@code null} for a pool for each search
+     */
+    private List<Outcome> runJobs(Job small, Job large, int noOfJobs, DeadlineScheduler scheduler) throws Exception {
+        boolean shared = scheduler != null;
+        List<ExecutorService> pools = new ArrayList<>();
+        List<CompletableFuture<Outcome>> outcomes = new ArrayList<>(noOfJobs);
+        try {
+            long nextArrival = System.nanoTime();
+            for (int i = 0; i < noOfJobs; i++) {
+                long wait = nextArrival - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                nextArrival += TimeUnit.MILLISECONDS.toNanos(intervalOption);
+                boolean isLarge = (i + 1) % largeEveryOption == 0;
+                Job job = isLarge ? large : small;
+                TablePlannerService service;
+                if (shared) {
+                    service = new TablePlannerService(scheduler, noOfWorkersOption);
+                } else {
+                    ExecutorService pool = Executors.newFixedThreadPool(noOfWorkersOption);
+                    pools.add(pool);
+                    service = new TablePlannerService(pool, noOfWorkersOption);
+                }
+                long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(job.deadlineMillis);
+                PlanRequest request = new PlanRequest(job.planFactory, job.noOfIterations, i, TablePlanner.Engine.RANDOM, PlanRequest.DEFAULT_SEEN_PLANS,
+                        Instant.now().plusMillis(job.deadlineMillis), 0);
+                outcomes.add(service.plan(request).handle((result, failure) -> new Outcome(isLarge, result, failure, deadlineNanos)));
+            }
+            List<Outcome> done = new ArrayList<>(noOfJobs);
+            for (CompletableFuture<Outcome> outcome : outcomes) {
+                done.add(outcome.get());
+            }
+            return done;
+        } finally {
+            if (scheduler != null) {
+                scheduler.close();
+            }
+            pools.forEach(ExecutorService::shutdownNow);
+        }
+    }
+
+    private static String hitRate(List<Outcome> outcomes) {
+        return hitRate(outcomes.stream().filter(outcome -> outcome.onTime).count(), outcomes.size());
+    }
+
+    private static String hitRate(long onTime, long all) {
+        return onTime + "/" + all + " (" + TablePlannerJ.formatDouble(all == 0 ? 100 : 100.0 * onTime / all, 1) + "%)";
+    }
+
+    private static final class Job {
+        private final PlanFactory planFactory;
+        private final int noOfIterations;
+        private final long deadlineMillis;
+
+        private Job(String shape, long deadlineMillis) {
+            String[] values = shape.split(":");
+            if (values.length != 4) {
+                throw new IllegalArgumentException("Search is expected as GUESTS:TABLES:SESSIONS:ITERATIONS, not " + shape);
+            }
+            List<String> tableNames = IntStream.rangeClosed(1, Integer.parseInt(values[1])).mapToObj(Integer::toString).collect(Collectors.toList());
+            List<String> guestNames = IntStream.rangeClosed(1, Integer.parseInt(values[0])).mapToObj(Integer::toString).collect(Collectors.toList());
+            this.planFactory = new PlanFactory(Integer.parseInt(values[2]), tableNames, guestNames, null);
+            this.noOfIterations = Integer.parseInt(values[3]);
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+
+    private static final class Outcome {
+        private final boolean large;
+        private final boolean onTime;
+
+        /**
+         * Counted as by the scheduler (see {@link DeadlineScheduler#getOnTime()}).
+         */
+        private Outcome(boolean large, PlanResult result, Throwable failure, long deadlineNanos) {
+            this.large = large;
+            this.onTime = failure == null && !result.isDeadlineReached() && System.nanoTime() - deadlineNanos <= 0;
+        }
+    }
+}
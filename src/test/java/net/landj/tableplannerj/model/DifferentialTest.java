@@ -0,0 +1,340 @@
+package net.landj.tableplannerj.model;
+
+import net.landj.tableplannerj.allocators.LookAheadTableAllocator;
+import net.landj.tableplannerj.allocators.NextTableAllocator;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Differential check of optimised scoring and seating against plain reference code.<p/>
+ * Seatings are generated for a corpus of event shapes, from small and edge cases (a table per session, guests left over,
+ * limited capacity, meeting history, attributes, random seatings with empty tables and revisits) to large events seated in parallel.
+ * For every seating it checks that:
+ * <ul>
+ * <li>guest score, diversity and follow-ups of every guest, table score, attribute mix and the rating of the plan
+ * (seated and replayed from its seating) match {@link ReferencePlan}</li>
+ * <li>replayed plans have exactly the same rating as the seated ones and the perfect plan check agrees with the reference</li>
+ * <li>scores of guests with the guests at a table are the same whether counted from guests or from a set of indexes,
+ * and match the reference</li>
+ * <li>a plan seated again from the same random numbers, by the {@link LookAheadTableAllocator} or by a reference copy of it
+ * scoring tables from guests, chooses the same tables</li>
+ * <li>a seating survives the binary plan file</li>
+ * </ul>
+ * Whole numbers have to be equal, other values equal up to the rounding of {@code double} calculations
+ * (as guest scores of pairs meeting more than {@link MeetingWeights#MAX_MEETINGS} times).
+ * A case fails when anything differs, so rewrites of the hot paths can be checked before they are accepted.
+ */
+final class DifferentialTest {
+    /**
+     * Relative difference of {@code double} values allowed for the order of calculations
+     */
+    private static final double TOLERANCE = 1e-12;
+    private static final int MAX_TABLE_SCORES = 256;
+    private static final int MAX_REPORTED = 10;
+    private static final int NO_OF_PLANS = 10;
+    private static final long SEED = 1;
+
+    private final List<String> mismatches = new ArrayList<>();
+    private int noOfChecks;
+    private boolean exactWeights;
+
+    static Stream<Case> cases() {
+        return Stream.of(
+                new Case("6:3:2"),
+                new Case("8:3:2"),
+                new Case("9:3:3"),
+                new Case("16:4:4"),
+                new Case("17:4:4"),
+                new Case("30:5:5"),
+                new Case("50:5:5"),
+                new Case("17:4:4").withCapacities(5, 5, 4, 4),
+                new Case("16:4:4").withHistory(),
+                new Case("30:5:4").withAttributes(),
+                new Case("30:5:4").withHistory().withAttributes(),
+                // pairs meeting more often than exact meeting weights allow
+                new Case("16:4:4").withHistory(MeetingWeights.MAX_MEETINGS + 10),
+                new Case("12:4:3").withRandomSeating(),
+                new Case("200:10:5"),
+                new Case("1000:40:5").withSeatingPool().withPlans(2));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("cases")
+    void matchesReference(Case check) {
+        run(check, Math.min(NO_OF_PLANS, check.maxPlans));
+        assertTrue(mismatches.isEmpty(), () -> mismatches.size() + " of " + noOfChecks + " checks don't match:\n"
+                + mismatches.stream().limit(MAX_REPORTED).collect(Collectors.joining("\n")));
+    }
+
+    private void checkEqual(String what, double expected, double actual) {
+        noOfChecks++;
+        if (expected != actual && !(Double.isNaN(expected) && Double.isNaN(actual))) {
+            mismatches.add(what + ": expected " + expected + ", was " + actual);
+        }
+    }
+
+    /**
+     * Guest scores are exact unless pairs meet more than {@link MeetingWeights#MAX_MEETINGS} times.
+     */
+    private void checkScore(String what, double expected, double actual) {
+        if (exactWeights) {
+            checkEqual(what, expected, actual);
+        } else {
+            checkClose(what, expected, actual);
+        }
+    }
+
+    private void checkClose(String what, double expected, double actual) {
+        noOfChecks++;
+        if (Math.abs(expected - actual) > TOLERANCE * Math.max(Math.abs(expected), Math.abs(actual))) {
+            mismatches.add(what + ": expected " + expected + ", was " + actual);
+        }
+    }
+
+    private void check(String what, boolean matches) {
+        noOfChecks++;
+        if (!matches) {
+            mismatches.add(what);
+        }
+    }
+
+    /**
+     * Compare the plan with the reference calculated from its seating.
+     */
+    private void checkPlan(String what, TablePlan plan, PlanFactory planFactory, int[][] pastMeetings, Random random) {
+        int[][] seating = plan.getSeating();
+        ReferencePlan reference = new ReferencePlan(planFactory, seating, pastMeetings);
+        for (Guest guest : plan.getGuests()) {
+            int index = guest.getIndex();
+            checkEqual(what + " diversity of " + guest, reference.getDiversity(index), guest.getDiversity());
+            checkEqual(what + " follow-ups of " + guest, reference.getFollowUps(index), guest.getFollowUps());
+            checkScore(what + " score of " + guest, reference.getScore(index), guest.getScore());
+        }
+        checkClose(what + " table score", reference.getTableScore(), plan.getTableScore());
+        checkClose(what + " follow-ups score", reference.getFollowUpsScore(), plan.getFollowUpsScore());
+        checkEqual(what + " diversity score", reference.getDiversityScore(), plan.getDiversityScore());
+        checkClose(what + " guest score", reference.getGuestScore(), plan.getGuestScores().getAvg());
+        checkClose(what + " attribute mix score", reference.getAttributeMixScore(), plan.getAttributeMixScore());
+        checkClose(what + " rating", reference.getRating(), plan.getRating());
+        PlanFilter filter = new PlanFilter(planFactory);
+        boolean perfect = Math.abs(reference.getRating() - filter.getPerfectRating()) <= TOLERANCE * filter.getPerfectRating();
+        check(what + " perfect: expected " + perfect, filter.isPerfect(plan) == perfect);
+
+        // scores with guests at a table, as allocators count them (a sample for large plans)
+        List<Table> tables = plan.getTables();
+        int noOfRounds = planFactory.getNoOfSessions();
+        int noOfTableScores = Math.min(MAX_TABLE_SCORES, plan.getGuests().size() * tables.size() * noOfRounds);
+        for (int i = 0; i < noOfTableScores; i++) {
+            Guest guest = plan.getGuests().get(random.nextInt(plan.getGuests().size()));
+            if (guest.getDiversity() == 0) {
+                continue;
+            }
+            Table table = tables.get(random.nextInt(tables.size()));
+            int round = 1 + random.nextInt(noOfRounds);
+            List<Guest> others = table.getGuestsAtTableInRound(round);
+            int[] otherIndexes = others.stream().mapToInt(Guest::getIndex).toArray();
+            String where = what + " score of " + guest + " with table " + table.getId() + " in round " + round;
+            double byGuests = Guest.calculateScore(guest, others);
+            checkScore(where + " (guests)", reference.getScore(guest.getIndex(), otherIndexes), byGuests);
+            checkScore(where + " (indexes)", byGuests, Guest.calculateScore(guest, table.getOccupants(round)));
+        }
+    }
+
+    private static boolean sameSeating(int[][] seating, int[][] other) {
+        return Arrays.deepEquals(seating, other);
+    }
+
+    private void run(Case check, int noOfPlans) {
+        int noOfGuests = check.noOfGuests;
+        int noOfTables = check.noOfTables;
+        int noOfSessions = check.noOfSessions;
+        Random random = new Random(SEED ^ check.toString().hashCode());
+        exactWeights = !check.history || check.maxPastMeetings + noOfSessions <= MeetingWeights.MAX_MEETINGS;
+        List<String> tableNames = IntStream.rangeClosed(1, noOfTables).mapToObj(Integer::toString).collect(Collectors.toList());
+        List<String> guestNames = IntStream.rangeClosed(1, noOfGuests).mapToObj(Integer::toString).collect(Collectors.toList());
+        ForkJoinPool pool = check.seatingPool ? new ForkJoinPool(2) : null;
+        try {
+            PlanFactory planFactory = new PlanFactory(noOfSessions, tableNames, guestNames, null, null, null, check.capacities,
+                    check.attributes ? randomAttributes(noOfGuests, random) : null, pool);
+            for (int i = 0; i < noOfPlans; i++) {
+                int[][] pastMeetings = check.history ? randomHistory(noOfGuests, check.maxPastMeetings, random) : new int[noOfGuests][noOfGuests];
+                if (check.randomSeating) {
+                    int[][] seating = new int[noOfGuests][noOfSessions];
+                    for (int[] guestSeating : seating) {
+                        Arrays.setAll(guestSeating, round -> random.nextInt(noOfTables));
+                    }
+                    checkPlan(check + " random seating " + i, planFactory.rebuildPlan(seating), planFactory, pastMeetings, random);
+                    continue;
+                }
+                long seed = random.nextLong();
+                TablePlan plan = check.history
+                        ? planFactory.newPlan(PlanFactory.iterationRandom(seed, i), pastMeetings)
+                        : planFactory.newPlan(PlanFactory.iterationRandom(seed, i));
+                plan.run();
+                checkPlan(check + " plan " + i, plan, planFactory, pastMeetings, random);
+                int[][] seating = plan.getSeating();
+
+                if (!check.history) {
+                    // history of these plans isn't known to the factory
+                    TablePlan replayed = planFactory.rebuildPlan(seating);
+                    checkPlan(check + " replayed plan " + i, replayed, planFactory, pastMeetings, random);
+                    check(check + " replayed plan " + i + " rating differs", replayed.getExactRating().compareTo(plan.getExactRating()) == 0
+                            && replayed.getRating() == plan.getRating());
+
+                    TablePlan again = planFactory.newPlan(PlanFactory.iterationRandom(seed, i));
+                    again.run();
+                    check(check + " plan " + i + " seated again differs", sameSeating(seating, again.getSeating()));
+                }
+                if (!check.seatingPool && !check.history) {
+                    checkAllocators(check, planFactory, tableNames, guestNames, seed, i);
+                }
+                check(check + " plan " + i + " differs in a plan file",
+                        sameSeating(seating, PlanFile.of(tableNames, guestNames, seating).getSeating()));
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Seat the plan by the look-ahead allocator and by its reference copy, with the same random numbers.
+     */
+    private void checkAllocators(Case check, PlanFactory planFactory, List<String> tableNames, List<String> guestNames, long seed, int i) {
+        int[] factoryCapacities = planFactory.getCapacities();
+        GuestAttributes factoryAttributes = planFactory.getAttributes();
+        TablePlan optimised = new PlanFactory(check.noOfSessions, tableNames, guestNames, new LookAheadTableAllocator(),
+                null, null, factoryCapacities, factoryAttributes).newPlan(PlanFactory.iterationRandom(seed, i));
+        optimised.run();
+        TablePlan reference = new PlanFactory(check.noOfSessions, tableNames, guestNames, new ReferenceLookAheadTableAllocator(),
+                null, null, factoryCapacities, factoryAttributes).newPlan(PlanFactory.iterationRandom(seed, i));
+        reference.run();
+        check(check + " plan " + i + " look-ahead tables differ from the reference", sameSeating(reference.getSeating(), optimised.getSeating()));
+    }
+
+    private static GuestAttributes randomAttributes(int noOfGuests, Random random) {
+        List<Map<String, String>> properties = new ArrayList<>(noOfGuests);
+        for (int guest = 0; guest < noOfGuests; guest++) {
+            Map<String, String> guestProperties = new HashMap<>();
+            guestProperties.put("department", "D" + random.nextInt(3));
+            if (random.nextInt(4) > 0) {
+                // some guests don't have the attribute
+                guestProperties.put("location", "L" + random.nextInt(2));
+            }
+            properties.add(guestProperties);
+        }
+        return GuestAttributes.of(properties);
+    }
+
+    private static int[][] randomHistory(int noOfGuests, int maxPastMeetings, Random random) {
+        int[][] pastMeetings = new int[noOfGuests][noOfGuests];
+        for (int guest = 0; guest < noOfGuests; guest++) {
+            for (int other = 0; other < guest; other++) {
+                int meetings = random.nextInt(4) == 0 ? 1 + random.nextInt(maxPastMeetings) : 0;
+                pastMeetings[guest][other] = meetings;
+                pastMeetings[other][guest] = meetings;
+            }
+        }
+        return pastMeetings;
+    }
+
+    static final class Case {
+        private final int noOfGuests;
+        private final int noOfTables;
+        private final int noOfSessions;
+        private int[] capacities;
+        private boolean history;
+        private int maxPastMeetings;
+        private boolean attributes;
+        private boolean randomSeating;
+        private boolean seatingPool;
+        private int maxPlans = Integer.MAX_VALUE;
+
+        private Case withCapacities(int... capacities) {
+            this.capacities = capacities;
+            return this;
+        }
+
+        private Case withHistory() {
+            return withHistory(3);
+        }
+
+        private Case withHistory(int maxPastMeetings) {
+            this.history = true;
+            this.maxPastMeetings = maxPastMeetings;
+            return this;
+        }
+
+        private Case withAttributes() {
+            this.attributes = true;
+            return this;
+        }
+
+        private Case withRandomSeating() {
+            this.randomSeating = true;
+            return this;
+        }
+
+        private Case withSeatingPool() {
+            this.seatingPool = true;
+            return this;
+        }
+
+        private Case withPlans(int maxPlans) {
+            this.maxPlans = maxPlans;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return noOfGuests + ":" + noOfTables + ":" + noOfSessions
+                    + (capacities != null ? " capacities=" + Arrays.toString(capacities) : "")
+                    + (history ? " history" + (maxPastMeetings != 3 ? "=" + maxPastMeetings : "") : "")
+                    + (attributes ? " attributes" : "")
+                    + (randomSeating ? " random" : "")
+                    + (seatingPool ? " parallel" : "");
+        }
+
+        private Case(String shape) {
+            String[] values = shape.split(":");
+            this.noOfGuests = Integer.parseInt(values[0]);
+            this.noOfTables = Integer.parseInt(values[1]);
+            this.noOfSessions = Integer.parseInt(values[2]);
+        }
+    }
+
+    /**
+     * {@link LookAheadTableAllocator} scoring tables from the guests sitting there, as it was written originally.
+     */
+    private static final class ReferenceLookAheadTableAllocator extends NextTableAllocator {
+        @NotNull
+        public Table nextTable(@NotNull Guest guest, @NotNull List<Table> tables, int round, @NotNull Random random) {
+            List<Pair<Double, Table>> tablesBySuitability = availableTables(guest, tables, round)
+                    .map(table -> new ImmutablePair<>(Guest.calculateScore(guest, table.getGuestsAtTableInRound(round)), table))
+                    .sorted(Comparator.comparingDouble(Pair::getLeft)).collect(Collectors.toList());
+
+            return randomise(random, tablesBySuitability.stream()
+                    .filter(pair -> pair.getLeft().equals(tablesBySuitability.get(0).getLeft()))
+                    .map(Pair::getRight)
+                    .collect(Collectors.toList()));
+        }
+    }
+}
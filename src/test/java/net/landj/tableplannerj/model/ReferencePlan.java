@@ -0,0 +1,160 @@
+package net.landj.tableplannerj.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.pow;
+import static net.landj.tableplannerj.TablePlanner.BASE_GUEST_RATING;
+
+/**
+ * Reference rating of a seating, calculated the plain way as the rating is defined (see {@link TablePlan#getRating()}).<p/>
+ * Nothing is cached or updated incrementally: meetings are counted pair by pair straight from the seating,
+ * meetings are weighted by {@code pow(BASE_GUEST_RATING, m)} and medians come from sorted copies.
+ * It is slow and kept that way on purpose, as an oracle to check optimised {@link Guest}, {@link Table} and {@link TablePlan} code against.
+ */
+final class ReferencePlan {
+    private final int[] diversities;
+    private final int[] followUps;
+    private final double[] scores;
+    private final double tableScore;
+    private final double attributeMixScore;
+    private final double followUpsScore;
+    private final double diversityScore;
+    private final double guestScore;
+    private final int[][] meetings; // [guest][other] meetings in the plan (without previous events)
+    private final int[][] pastMeetings;
+
+    public final int getDiversity(int guest) {
+        return this.diversities[guest];
+    }
+
+    public final int getFollowUps(int guest) {
+        return this.followUps[guest];
+    }
+
+    public final double getScore(int guest) {
+        return this.scores[guest];
+    }
+
+    /**
+     * Score of the guest with given guests at a table, as a table allocator sees it
+     * (see {@link Guest#calculateScore(Guest, java.util.Collection)}).
+     */
+    public final double getScore(int guest, @NotNull int[] others) {
+        double sum = 0;
+        for (int other : others) {
+            sum += pow(BASE_GUEST_RATING, meetings[guest][other] + pastMeetings[guest][other]);
+        }
+        return sum / diversities[guest];
+    }
+
+    public final double getTableScore() {
+        return this.tableScore;
+    }
+
+    public final double getAttributeMixScore() {
+        return this.attributeMixScore;
+    }
+
+    public final double getFollowUpsScore() {
+        return this.followUpsScore;
+    }
+
+    public final double getDiversityScore() {
+        return this.diversityScore;
+    }
+
+    /**
+     * @return average guest score
+     */
+    public final double getGuestScore() {
+        return this.guestScore;
+    }
+
+    public final double getRating() {
+        return followUpsScore * diversityScore * guestScore * tableScore * attributeMixScore;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * @param planFactory  factory of the plan (tables, capacities and attributes)
+     * @param seating      table index for each guest (first dimension) and round (second dimension)
+     * @param pastMeetings number of meetings of each pair of guests at previous events
+     */
+    public ReferencePlan(@NotNull PlanFactory planFactory, @NotNull int[][] seating, @NotNull int[][] pastMeetings) {
+        int noOfGuests = seating.length;
+        int noOfRounds = planFactory.getNoOfSessions();
+        int noOfTables = planFactory.getNoOfTables();
+        GuestAttributes attributes = planFactory.getAttributes();
+        this.pastMeetings = pastMeetings;
+        this.meetings = new int[noOfGuests][noOfGuests];
+        this.diversities = new int[noOfGuests];
+        this.followUps = new int[noOfGuests];
+        this.scores = new double[noOfGuests];
+        long shared = 0;
+        long possiblyShared = 0;
+        for (int guest = 0; guest < noOfGuests; guest++) {
+            for (int other = 0; other < noOfGuests; other++) {
+                if (other == guest) {
+                    continue;
+                }
+                for (int round = 0; round < noOfRounds; round++) {
+                    if (seating[guest][round] == seating[other][round]) {
+                        meetings[guest][other]++;
+                        if (round > 0 && seating[guest][round - 1] == seating[other][round - 1]) {
+                            followUps[guest]++;
+                        }
+                        if (other < guest) {
+                            shared += attributes.countShared(guest, other);
+                            possiblyShared += attributes.getNoOfKeys();
+                        }
+                    }
+                }
+            }
+        }
+        double[] diversityValues = new double[noOfGuests];
+        double[] followUpValues = new double[noOfGuests];
+        double scoreSum = 0;
+        for (int guest = 0; guest < noOfGuests; guest++) {
+            double weights = 0;
+            for (int other = 0; other < noOfGuests; other++) {
+                if (meetings[guest][other] > 0) {
+                    diversities[guest]++;
+                    weights += pow(BASE_GUEST_RATING, meetings[guest][other] + pastMeetings[guest][other]);
+                }
+            }
+            scores[guest] = diversities[guest] > 0 ? weights / diversities[guest] : 0;
+            scoreSum += scores[guest];
+            diversityValues[guest] = diversities[guest];
+            followUpValues[guest] = followUps[guest];
+        }
+        double avgFollowUps = Arrays.stream(followUpValues).sum() / noOfGuests;
+        this.followUpsScore = max(Arrays.stream(followUpValues).max().orElse(0) + (median(followUpValues) - avgFollowUps), 1.0);
+        this.diversityScore = 1.0 + (Arrays.stream(diversityValues).max().orElse(0) - Arrays.stream(diversityValues).min().orElse(0));
+        this.guestScore = scoreSum / noOfGuests;
+
+        long totalCapacity = Arrays.stream(planFactory.getCapacities()).asLongStream().sum();
+        double tableScore = 1.0;
+        for (int table = 0; table < noOfTables; table++) {
+            int guestsAtTable = 0;
+            for (int[] guestSeating : seating) {
+                for (int round = 0; round < noOfRounds; round++) {
+                    if (guestSeating[round] == table) {
+                        guestsAtTable++;
+                    }
+                }
+            }
+            tableScore += abs(((double) guestsAtTable) / noOfRounds - ((double) noOfGuests) * planFactory.getCapacities()[table] / totalCapacity);
+        }
+        this.tableScore = tableScore;
+        this.attributeMixScore = possiblyShared > 0 ? 1.0 + ((double) shared) / possiblyShared : 1.0;
+    }
+}